@@ -0,0 +1,102 @@
+/**
+ * Draws accepted strings of one length uniformly at random. The
+ * number of accepted strings of every shorter length from every
+ * state is computed once, on the first draw; after that each
+ * string is built one symbol at a time, picking each symbol with
+ * probability proportional to the number of accepted strings it
+ * leaves reachable.
+ *
+ * @author Josh Miller and Jack Garcia
+ */
+
+
+package fa.dfa;
+
+import java.math.BigInteger;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+public class AcceptedSampler {
+
+    private final CompiledDFA dfa;
+    private final int length;  //Length of the strings drawn
+    private final Random random;
+    private BigInteger[][] counts;     //counts[k][q] = accepted strings of length k from q
+
+    /**
+     * Creates a sampler. Nothing is computed until the first draw.
+     *
+     * @param dfa the compiled DFA
+     * @param length the length of the strings to draw
+     * @param random the source of randomness
+     */
+    AcceptedSampler(CompiledDFA dfa, int length, Random random) {
+        if (length < 0) throw new IllegalArgumentException("negative length " + length);
+        this.dfa = dfa;
+        this.length = length;
+        this.random = random;
+    }
+
+    /**
+     * @return true if the DFA accepts no string of this length
+     */
+    public boolean isEmpty() {
+        int start = dfa.startState();
+        return length == 0 || start == CompiledDFA.DEAD || counts()[length][start].signum() == 0;
+    }
+
+    /**
+     * Draws an accepted string.
+     *
+     * @return a uniformly random accepted string of this length
+     * @throws NoSuchElementException if the DFA accepts no string of this length
+     */
+    public String next() {
+        if (isEmpty()) {
+            throw new NoSuchElementException("no accepted string of length " + length);
+        }
+
+        BigInteger[][] counts = counts();
+        StringBuilder builder = new StringBuilder(length);
+        int q = dfa.startState();
+        for (int remaining = length; remaining > 0; remaining--) {
+            BigInteger pick = below(counts[remaining][q]);
+            for (int sym = 0; sym < dfa.symbolCount(); sym++) {
+                int t = dfa.next(q, sym);
+                if (t == CompiledDFA.DEAD) continue;
+
+                BigInteger c = counts[remaining - 1][t];
+                if (pick.compareTo(c) < 0) {
+                    builder.append(dfa.symbol(sym));
+                    q = t;
+                    break;
+                }
+                pick = pick.subtract(c);
+            }
+        }
+        return builder.toString();
+    }
+
+    private BigInteger[][] counts() {
+        if (counts == null) {
+            BigInteger[][] table = new BigInteger[length + 1][];
+            table[0] = LanguageCounter.initialCounts(dfa);
+            for (int k = 1; k <= length; k++) {
+                table[k] = LanguageCounter.step(dfa, table[k - 1]);
+            }
+            counts = table;
+        }
+        return counts;
+    }
+
+    /**
+     * @return a uniformly random number in [0, bound)
+     */
+    private BigInteger below(BigInteger bound) {
+        BigInteger r;
+        do {
+            r = new BigInteger(bound.bitLength(), random);
+        } while (r.compareTo(bound) >= 0);
+        return r;
+    }
+}
@@ -0,0 +1,680 @@
+/**
+ * Represents a frozen, table driven copy of a DFA. States and
+ * symbols are numbered and the transition function is kept in a
+ * single flat array, so matching does not touch any maps.
+ * A compiled DFA never changes after it has been created.
+ *
+ * States are numbered so that states used together sit close
+ * together in the table: breadth first from the start state by
+ * default, or by how often sample inputs visit them. The table
+ * stores state ids as bytes or shorts when there are few enough
+ * states, which makes it two to four times smaller.
+ *
+ * @author Josh Miller and Jack Garcia
+ */
+
+
+package fa.dfa;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+public final class CompiledDFA {
+
+    static final int DEAD = -1;    //Marks a missing transition
+    private static final int MIN_CHUNK = 1 << 16;  //Smallest chunk handed to a parallel task
+
+    private final String[] names;  //State labels, indexed by state id
+    private final char[] symbols;  //Alphabet, indexed by symbol id
+    private final int[] symbolIndex;   //Maps a character to its symbol id or DEAD
+    private final byte[] delta8;   //delta[state * symbols.length + symbol] = next state or DEAD,
+    private final short[] delta16; //stored in the narrowest of these three arrays
+    private final int[] delta32;   //that fits every state id; the other two are null
+    private final boolean[] accepting; //Final states
+    private final int start;   //Initial state id or DEAD
+
+    /**
+     * Compiles the given states, numbering them breadth first
+     * from the start state.
+     *
+     * @param states the states of the DFA
+     * @param sigma the alphabet of the DFA
+     * @param initialState the start state, may be null
+     * @return the compiled DFA
+     */
+    static CompiledDFA of(Collection<DFAState> states, Set<Character> sigma, DFAState initialState) {
+        int n = states.size();
+        String[] names = new String[n];
+        boolean[] accepting = new boolean[n];
+        char[] symbols = new char[sigma.size()];
+
+        int k = 0;
+        for (char symbol : sigma) {
+            symbols[k++] = symbol;
+        }
+
+        Map<DFAState, Integer> ids = new HashMap<>(n * 2);
+        int id = 0;
+        for (DFAState state : states) {
+            ids.put(state, id);
+            names[id] = state.getName();
+            accepting[id] = state.isFinal();
+            id++;
+        }
+
+        int[] delta = new int[n * symbols.length];
+        id = 0;
+        for (DFAState state : states) {
+            for (int sym = 0; sym < symbols.length; sym++) {
+                DFAState to = state.getTransistion(symbols[sym]);
+                delta[id * symbols.length + sym] = to != null ? ids.get(to) : DEAD;
+            }
+            id++;
+        }
+
+        int start = initialState != null ? ids.get(initialState) : DEAD;
+        return new CompiledDFA(names, symbols, delta, accepting, start).withBreadthFirstLayout();
+    }
+
+    /**
+     * Wraps tables that were already built. The transition table
+     * is copied into narrower storage when the state ids allow it.
+     *
+     * @param names state labels, indexed by state id
+     * @param symbols the alphabet, indexed by symbol id
+     * @param delta the transition table, DEAD for missing transitions
+     * @param accepting the final states
+     * @param start the start state id or DEAD
+     */
+    CompiledDFA(String[] names, char[] symbols, int[] delta, boolean[] accepting, int start) {
+        this.names = names;
+        this.symbols = symbols;
+        this.symbolIndex = indexSymbols(symbols);
+        this.accepting = accepting;
+        this.start = start;
+
+        if (names.length <= Byte.MAX_VALUE) {
+            delta8 = new byte[delta.length];
+            for (int i = 0; i < delta.length; i++) {
+                delta8[i] = (byte) delta[i];
+            }
+            delta16 = null;
+            delta32 = null;
+        } else if (names.length <= Short.MAX_VALUE) {
+            delta8 = null;
+            delta16 = new short[delta.length];
+            for (int i = 0; i < delta.length; i++) {
+                delta16[i] = (short) delta[i];
+            }
+            delta32 = null;
+        } else {
+            delta8 = null;
+            delta16 = null;
+            delta32 = delta;
+        }
+    }
+
+    /**
+     * Renumbers the states breadth first from the start state, trying
+     * symbols in order. States the start state cannot reach keep
+     * their relative order and go last.
+     *
+     * @return the renumbered DFA
+     */
+    CompiledDFA withBreadthFirstLayout() {
+        int n = names.length;
+        int[] order = new int[n];
+        boolean[] placed = new boolean[n];
+        int count = 0;
+
+        if (start != DEAD) {
+            order[count++] = start;
+            placed[start] = true;
+        }
+        for (int head = 0; head < count; head++) {
+            int q = order[head];
+            for (int sym = 0; sym < symbols.length; sym++) {
+                int t = next(q, sym);
+                if (t != DEAD && !placed[t]) {
+                    placed[t] = true;
+                    order[count++] = t;
+                }
+            }
+        }
+        for (int q = 0; q < n; q++) {
+            if (!placed[q]) {
+                order[count++] = q;
+            }
+        }
+
+        return reorder(order);
+    }
+
+    /**
+     * Renumbers the states by how often the sample inputs visit them,
+     * most visited first, so the rows used by typical inputs share
+     * cache lines. States no sample visits keep their relative order.
+     *
+     * @param samples typical inputs
+     * @return the renumbered DFA
+     */
+    public CompiledDFA withProfiledLayout(Iterable<? extends CharSequence> samples) {
+        int n = names.length;
+        long[] visits = new long[n];
+        for (CharSequence s : samples) {
+            int state = start;
+            for (int i = 0; i < s.length() && state != DEAD; i++) {
+                visits[state]++;
+                state = step(state, s.charAt(i));
+            }
+            if (state != DEAD) {
+                visits[state]++;
+            }
+        }
+
+        Integer[] boxed = new Integer[n];
+        for (int q = 0; q < n; q++) {
+            boxed[q] = q;
+        }
+        //Arrays.sort on objects is stable, so ties keep the current order
+        Arrays.sort(boxed, (a, b) -> Long.compare(visits[b], visits[a]));
+
+        int[] order = new int[n];
+        for (int q = 0; q < n; q++) {
+            order[q] = boxed[q];
+        }
+        return reorder(order);
+    }
+
+    /**
+     * Builds a copy of this DFA in which state order[i] becomes state i.
+     *
+     * @param order the old state ids in their new order
+     * @return the renumbered DFA
+     */
+    private CompiledDFA reorder(int[] order) {
+        int n = names.length;
+        int k = symbols.length;
+        int[] newId = new int[n];
+        for (int i = 0; i < n; i++) {
+            newId[order[i]] = i;
+        }
+
+        String[] newNames = new String[n];
+        boolean[] newAccepting = new boolean[n];
+        int[] newDelta = new int[n * k];
+        for (int i = 0; i < n; i++) {
+            int q = order[i];
+            newNames[i] = names[q];
+            newAccepting[i] = accepting[q];
+            for (int sym = 0; sym < k; sym++) {
+                int t = next(q, sym);
+                newDelta[i * k + sym] = t == DEAD ? DEAD : newId[t];
+            }
+        }
+
+        return new CompiledDFA(newNames, symbols, newDelta, newAccepting, start == DEAD ? DEAD : newId[start]);
+    }
+
+    /**
+     * Builds the smallest DFA that accepts the same strings. States
+     * that cannot be reached or cannot reach a final state are
+     * dropped and equivalent states are merged; each state keeps the
+     * label of one of the states it replaces.
+     *
+     * @return the minimal DFA
+     */
+    public CompiledDFA minimize() {
+        DFAOperationEvent event = DFAEvents.beginOperation();
+        CompiledDFA result = Minimizer.minimize(this);
+        DFAEvents.endOperation(event, "minimize", result.stateCount(), event != null ? result.transitionCount() : 0);
+        return result;
+    }
+
+    /**
+     * Builds the canonical form: the minimal DFA over the symbols it
+     * uses, in character order, with states numbered breadth first
+     * from the start state and named q0, q1, ... The start state is
+     * never final, since the empty string is never accepted. Two DFAs
+     * accept the same strings exactly when their canonical forms are
+     * identical.
+     *
+     * @return the canonical form
+     */
+    public CompiledDFA canonical() {
+        return Minimizer.canonical(this);
+    }
+
+    /**
+     * @return the 128-bit hash of the canonical form
+     */
+    public DFAFingerprint fingerprint() {
+        return DFAFingerprint.of(canonical());
+    }
+
+    /**
+     * @param newNames a label for each state id
+     * @return a copy of this DFA with the states relabeled
+     */
+    CompiledDFA withNames(String[] newNames) {
+        int[] delta = new int[names.length * symbols.length];
+        for (int i = 0; i < delta.length; i++) {
+            delta[i] = next(i / symbols.length, i % symbols.length);
+        }
+        return new CompiledDFA(newNames, symbols, delta, accepting, start);
+    }
+
+    /**
+     * @return the number of transitions that are not DEAD
+     */
+    long transitionCount() {
+        long count = 0;
+        for (int q = 0; q < names.length; q++) {
+            for (int sym = 0; sym < symbols.length; sym++) {
+                if (next(q, sym) != DEAD) count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of bytes each entry of the transition table takes
+     */
+    public int stateIdBytes() {
+        return delta8 != null ? 1 : delta16 != null ? 2 : 4;
+    }
+
+    /**
+     * Builds the character to symbol id lookup table.
+     *
+     * @param symbols the alphabet, indexed by symbol id
+     * @return the lookup table
+     */
+    static int[] indexSymbols(char[] symbols) {
+        int maxChar = -1;
+        for (char symbol : symbols) {
+            maxChar = Math.max(maxChar, symbol);
+        }
+
+        int[] index = new int[maxChar + 1];
+        Arrays.fill(index, DEAD);
+        for (int i = 0; i < symbols.length; i++) {
+            index[symbols[i]] = i;
+        }
+        return index;
+    }
+
+    /**
+     * Checks if the DFA accepts the input string.
+     * Like DFA.accepts, the empty string is never accepted.
+     *
+     * @param s the input string
+     * @return true if s is accepted
+     */
+    public boolean accepts(CharSequence s) {
+        if (s.length() == 0 || start == DEAD) return false;
+        DFAAcceptEvent event = DFAEvents.beginAccept();
+
+        //One loop per table width keeps the width check out of the loop
+        int k = symbols.length;
+        int state = start;
+        int i = 0;
+        if (delta8 != null) {
+            for (; i < s.length() && state != DEAD; i++) {
+                int sym = symbolOf(s.charAt(i));
+                state = sym == DEAD ? DEAD : delta8[state * k + sym];
+            }
+        } else if (delta16 != null) {
+            for (; i < s.length() && state != DEAD; i++) {
+                int sym = symbolOf(s.charAt(i));
+                state = sym == DEAD ? DEAD : delta16[state * k + sym];
+            }
+        } else {
+            for (; i < s.length() && state != DEAD; i++) {
+                int sym = symbolOf(s.charAt(i));
+                state = sym == DEAD ? DEAD : delta32[state * k + sym];
+            }
+        }
+
+        boolean result = state != DEAD && accepting[state];
+        DFAEvents.endAccept(event, "compiled", s.length(), i, result);
+        return result;
+    }
+
+    /**
+     * Checks if the DFA accepts the input string by splitting it into
+     * chunks and running the chunks on the common ForkJoinPool. Each
+     * chunk computes where it would take every state, and the chunk
+     * results are then composed in order.
+     *
+     * @param s the input string
+     * @return true if s is accepted
+     */
+    public boolean acceptsParallel(CharSequence s) {
+        if (s.length() == 0 || start == DEAD) return false;
+
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        int chunk = Math.max(MIN_CHUNK, s.length() / (pool.getParallelism() * 4));
+        if (s.length() <= chunk) {
+            return accepts(s);
+        }
+
+        DFAAcceptEvent event = DFAEvents.beginAccept();
+        int state = pool.invoke(new TransferTask(s, 0, s.length(), chunk))[start];
+        boolean result = state != DEAD && accepting[state];
+        //Every chunk is read to the end, whatever the start state does
+        DFAEvents.endAccept(event, "parallel", s.length(), s.length(), result);
+        return result;
+    }
+
+    /**
+     * Checks many input strings in one pass over the table. The inputs
+     * are read in lockstep, one symbol of each per round, so the table
+     * lookups of different inputs do not wait on each other, and an
+     * input drops out as soon as it ends or dies.
+     * Like accepts, the empty string is never accepted.
+     *
+     * @param inputs the input strings
+     * @return the indexes of the accepted inputs
+     */
+    public BitSet acceptsAll(List<? extends CharSequence> inputs) {
+        int n = inputs.size();
+        BitSet result = new BitSet(n);
+        if (start == DEAD) return result;
+
+        CharSequence[] strings = new CharSequence[n];
+        DFAAcceptEvent[] events = new DFAAcceptEvent[n];
+        //The running inputs are kept packed at the front, so dropping one is a swap
+        int[] active = new int[n];
+        int[] states = new int[n];
+        int count = 0;
+        for (int j = 0; j < n; j++) {
+            strings[j] = inputs.get(j);
+            if (strings[j].length() == 0) continue;
+            events[j] = DFAEvents.beginAccept();
+            active[count] = j;
+            states[count] = start;
+            count++;
+        }
+
+        for (int i = 0; count > 0; i++) {
+            for (int a = 0; a < count; ) {
+                int j = active[a];
+                CharSequence s = strings[j];
+                int state = step(states[a], s.charAt(i));
+                if (state != DEAD && i + 1 < s.length()) {
+                    states[a] = state;
+                    a++;
+                    continue;
+                }
+
+                boolean accepted = state != DEAD && accepting[state];
+                if (accepted) {
+                    result.set(j);
+                }
+                DFAEvents.endAccept(events[j], "batch", s.length(), i + 1, accepted);
+                count--;
+                active[a] = active[count];
+                states[a] = states[count];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of states
+     */
+    public int stateCount() {
+        return names.length;
+    }
+
+    /**
+     * @return the number of symbols in the alphabet
+     */
+    public int symbolCount() {
+        return symbols.length;
+    }
+
+    /**
+     * @return the start state id, or DEAD if the DFA has no start state
+     */
+    int startState() {
+        return start;
+    }
+
+    /**
+     * @param state a state id
+     * @return the label of the state
+     */
+    String name(int state) {
+        return names[state];
+    }
+
+    /**
+     * @param sym a symbol id
+     * @return the character of the symbol
+     */
+    char symbol(int sym) {
+        return symbols[sym];
+    }
+
+    /**
+     * @param c a character
+     * @return the symbol id of c, or DEAD if c is not in the alphabet
+     */
+    int symbolOf(char c) {
+        return c < symbolIndex.length ? symbolIndex[c] : DEAD;
+    }
+
+    /**
+     * @param state a state id
+     * @return true if the state is final
+     */
+    boolean isAccepting(int state) {
+        return accepting[state];
+    }
+
+    /**
+     * @param state a state id
+     * @param sym a symbol id
+     * @return the next state id, or DEAD
+     */
+    int next(int state, int sym) {
+        int i = state * symbols.length + sym;
+        if (delta8 != null) return delta8[i];
+        if (delta16 != null) return delta16[i];
+        return delta32[i];
+    }
+
+    /**
+     * @param state a live state id
+     * @param c the input character
+     * @return the next state id, or DEAD
+     */
+    int step(int state, char c) {
+        int sym = symbolOf(c);
+        return sym == DEAD ? DEAD : next(state, sym);
+    }
+
+    /**
+     * Finds the states from which a final state can still be reached,
+     * by searching backwards from the final states. Once a run leaves
+     * these states, no more input can make it accept.
+     *
+     * @return live[q] is true if some string leads from q to a final state
+     */
+    boolean[] liveStates() {
+        int n = names.length;
+        int k = symbols.length;
+
+        //Reverse edges, grouped by target state
+        int[] first = new int[n + 1];
+        for (int q = 0; q < n; q++) {
+            for (int sym = 0; sym < k; sym++) {
+                int t = next(q, sym);
+                if (t != DEAD) first[t + 1]++;
+            }
+        }
+        for (int q = 0; q < n; q++) {
+            first[q + 1] += first[q];
+        }
+        int[] sources = new int[first[n]];
+        int[] fill = Arrays.copyOf(first, n);
+        for (int q = 0; q < n; q++) {
+            for (int sym = 0; sym < k; sym++) {
+                int t = next(q, sym);
+                if (t != DEAD) sources[fill[t]++] = q;
+            }
+        }
+
+        boolean[] live = new boolean[n];
+        int[] queue = new int[n];
+        int count = 0;
+        for (int q = 0; q < n; q++) {
+            if (accepting[q]) {
+                live[q] = true;
+                queue[count++] = q;
+            }
+        }
+        for (int head = 0; head < count; head++) {
+            int t = queue[head];
+            for (int i = first[t]; i < first[t + 1]; i++) {
+                int q = sources[i];
+                if (!live[q]) {
+                    live[q] = true;
+                    queue[count++] = q;
+                }
+            }
+        }
+        return live;
+    }
+
+    /**
+     * Computes the state to state mapping of s[from, to): result[q] is
+     * the state reached by reading that part of s from q, or DEAD.
+     * Only the distinct states that are still alive are stepped, so
+     * the work shrinks as start states die or run into each other.
+     *
+     * @param s the input
+     * @param from first index, inclusive
+     * @param to last index, exclusive
+     * @return the transfer function of the substring
+     */
+    int[] transfer(CharSequence s, int from, int to) {
+        int n = names.length;
+        int[] parent = new int[n];     //Union-find over start states that merged
+        int[] liveState = new int[n];  //Current state of each live group
+        int[] liveGroup = new int[n];  //Root start state of each live group
+        for (int q = 0; q < n; q++) {
+            parent[q] = q;
+            liveState[q] = q;
+            liveGroup[q] = q;
+        }
+        int liveCount = n;
+
+        int[] mark = new int[n];
+        int[] markIdx = new int[n];
+        int stamp = 0;
+
+        for (int i = from; i < to && liveCount > 0; i++) {
+            int sym = symbolOf(s.charAt(i));
+            if (sym == DEAD) {
+                liveCount = 0;
+                break;
+            }
+
+            stamp++;
+            int w = 0;
+            for (int j = 0; j < liveCount; j++) {
+                int t = next(liveState[j], sym);
+                if (t == DEAD) {
+                    continue;
+                }
+                if (mark[t] == stamp) {
+                    parent[liveGroup[j]] = liveGroup[markIdx[t]];
+                    continue;
+                }
+                mark[t] = stamp;
+                markIdx[t] = w;
+                liveState[w] = t;
+                liveGroup[w] = liveGroup[j];
+                w++;
+            }
+            liveCount = w;
+        }
+
+        int[] rootState = new int[n];
+        Arrays.fill(rootState, DEAD);
+        for (int j = 0; j < liveCount; j++) {
+            rootState[liveGroup[j]] = liveState[j];
+        }
+
+        int[] result = new int[n];
+        for (int q = 0; q < n; q++) {
+            int root = q;
+            while (parent[root] != root) {
+                root = parent[root];
+            }
+            parent[q] = root;
+            result[q] = rootState[root];
+        }
+
+        return result;
+    }
+
+    /**
+     * Composes two transfer functions, first f then g.
+     *
+     * @param f the first transfer function
+     * @param g the second transfer function
+     * @return the composed transfer function
+     */
+    static int[] compose(int[] f, int[] g) {
+        int[] result = new int[f.length];
+        for (int q = 0; q < f.length; q++) {
+            result[q] = f[q] == DEAD ? DEAD : g[f[q]];
+        }
+        return result;
+    }
+
+    /**
+     * Splits an input range in halves until it is at most one chunk
+     * long and composes the transfer functions of the halves.
+     */
+    private final class TransferTask extends RecursiveTask<int[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final CharSequence s;
+        private final int from;
+        private final int to;
+        private final int chunk;
+
+        TransferTask(CharSequence s, int from, int to, int chunk) {
+            this.s = s;
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+        }
+
+        @Override
+        protected int[] compute() {
+            if (to - from <= chunk) {
+                return transfer(s, from, to);
+            }
+
+            int mid = from + (to - from) / 2;
+            TransferTask left = new TransferTask(s, from, mid, chunk);
+            TransferTask right = new TransferTask(s, mid, to, chunk);
+            left.fork();
+            int[] rightResult = right.compute();
+            return compose(left.join(), rightResult);
+        }
+    }
+}
@@ -0,0 +1,363 @@
+/**
+ * Represents a DFA that can be changed while other threads keep
+ * matching against it. Readers always see an immutable, published
+ * version and never lock. Writers collect their changes in a Batch,
+ * and publishing the batch makes a new version that shares every
+ * page of states it did not touch with the old one, so publishing
+ * costs time proportional to the changed states.
+ *
+ * @author Josh Miller and Jack Garcia
+ */
+
+
+package fa.dfa;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class ConcurrentDFA {
+
+    private static final int SHIFT = 6;
+    private static final int PAGE = 1 << SHIFT;    //Number of states in one page
+    private static final int MASK = PAGE - 1;
+
+    private final ReentrantLock writeLock;     //Held by the open batch
+    private final Map<String, Integer> ids;    //State label to state id, guarded by writeLock
+    private volatile Version current;  //The published version
+
+    /**
+     * Constructor for an empty DFA.
+     */
+    public ConcurrentDFA() {
+        writeLock = new ReentrantLock();
+        ids = new HashMap<>();
+        current = new Version(new Page[0], 0, new char[0], CompiledDFA.DEAD, 0);
+    }
+
+    /**
+     * Constructor for a copy of an existing DFA.
+     *
+     * @param dfa the DFA to copy
+     */
+    public ConcurrentDFA(DFA dfa) {
+        this();
+        CompiledDFA table = dfa.compile();
+        try (Batch batch = edit()) {
+            for (int sym = 0; sym < table.symbolCount(); sym++) {
+                batch.addSigma(table.symbol(sym));
+            }
+            for (int state = 0; state < table.stateCount(); state++) {
+                batch.addState(table.name(state));
+                if (table.isAccepting(state)) {
+                    batch.setFinal(table.name(state));
+                }
+            }
+            for (int state = 0; state < table.stateCount(); state++) {
+                for (int sym = 0; sym < table.symbolCount(); sym++) {
+                    int to = table.next(state, sym);
+                    if (to != CompiledDFA.DEAD) {
+                        batch.addTransition(table.name(state), table.name(to), table.symbol(sym));
+                    }
+                }
+            }
+            if (table.startState() != CompiledDFA.DEAD) {
+                batch.setStart(table.name(table.startState()));
+            }
+            batch.publish();
+        }
+    }
+
+    /**
+     * Checks if the published version accepts the input string.
+     * Like DFA.accepts, the empty string is never accepted.
+     *
+     * @param s the input string
+     * @return true if s is accepted
+     */
+    public boolean accepts(CharSequence s) {
+        return current.accepts(s);
+    }
+
+    /**
+     * @return the number of the published version, starting at 0
+     */
+    public long version() {
+        return current.number;
+    }
+
+    /**
+     * @return the number of states in the published version
+     */
+    public int stateCount() {
+        return current.stateCount;
+    }
+
+    /**
+     * Starts a batch of changes. Only one batch can be open at a
+     * time; this waits until any other batch is published or closed.
+     *
+     * @return the new batch
+     */
+    public Batch edit() {
+        writeLock.lock();
+        return new Batch(current);
+    }
+
+    /**
+     * A set of changes that becomes visible to readers all at once
+     * when it is published. A batch belongs to the thread that opened it.
+     */
+    public final class Batch implements AutoCloseable {
+        private final Version base;    //The version the changes apply to
+        private Page[] pages;  //Working copy of the page table, null until the first change
+        private final boolean[] copied;    //Pages already copied by this batch, by page index
+        private final Map<String, Integer> added;  //States added by this batch
+        private int stateCount;
+        private char[] symbols;
+        private int[] symbolIndex;
+        private int start;
+        private boolean open;
+
+        private Batch(Version base) {
+            this.base = base;
+            this.copied = new boolean[base.pages.length];
+            this.added = new HashMap<>();
+            this.stateCount = base.stateCount;
+            this.symbols = base.symbols;
+            this.symbolIndex = base.symbolIndex;
+            this.start = base.start;
+            this.open = true;
+        }
+
+        /**
+         * Adds a state
+         *
+         * @param name is the label of the state
+         * @return true if a new state was created and false if one with that name exists
+         */
+        public boolean addState(String name) {
+            checkOpen();
+            if (id(name) != null) return false;
+
+            int state = stateCount++;
+            added.put(name, state);
+            int[] row = new int[symbols.length];
+            Arrays.fill(row, CompiledDFA.DEAD);
+            page(state).rows[state & MASK] = row;
+            return true;
+        }
+
+        /**
+         * Marks an existing state as final
+         *
+         * @param name is the label of the state
+         * @return true if successful and false if no state with such name exists
+         */
+        public boolean setFinal(String name) {
+            checkOpen();
+            Integer state = id(name);
+            if (state == null) return false;
+
+            page(state).finals[state & MASK] = true;
+            return true;
+        }
+
+        /**
+         * Sets the start state
+         *
+         * @param name is the label of the start state
+         * @return true if successful and false if no state with such name exists
+         */
+        public boolean setStart(String name) {
+            checkOpen();
+            Integer state = id(name);
+            if (state == null) return false;
+
+            start = state;
+            return true;
+        }
+
+        /**
+         * Adds a symbol to the alphabet
+         *
+         * @param symbol to add to the alphabet set
+         */
+        public void addSigma(char symbol) {
+            checkOpen();
+            if (symbolOf(symbolIndex, symbol) != CompiledDFA.DEAD) return;
+
+            symbols = Arrays.copyOf(symbols, symbols.length + 1);
+            symbols[symbols.length - 1] = symbol;
+            symbolIndex = CompiledDFA.indexSymbols(symbols);
+        }
+
+        /**
+         * Adds a transition
+         *
+         * @param fromState is the label of the state where the transition starts
+         * @param toState is the label of the state where the transition ends
+         * @param onSymb is the symbol from the DFA's alphabet.
+         * @return true if successful and false if one of the states don't exist or the symbol in not in the alphabet
+         */
+        public boolean addTransition(String fromState, String toState, char onSymb) {
+            checkOpen();
+            Integer from = id(fromState);
+            Integer to = id(toState);
+            int sym = symbolOf(symbolIndex, onSymb);
+            if (from == null || to == null || sym == CompiledDFA.DEAD) return false;
+
+            Page page = page(from);
+            int[] row = page.rows[from & MASK];
+            if (row.length <= sym) {
+                int oldLength = row.length;
+                row = Arrays.copyOf(row, symbols.length);
+                Arrays.fill(row, oldLength, row.length, CompiledDFA.DEAD);
+                page.rows[from & MASK] = row;
+            }
+            row[sym] = to;
+            return true;
+        }
+
+        /**
+         * Makes the changes visible to readers and closes the batch.
+         *
+         * @return the number of the new version
+         */
+        public long publish() {
+            checkOpen();
+            try {
+                ids.putAll(added);
+                Version next = new Version(pages != null ? pages : base.pages, stateCount, symbols, start,
+                        base.number + 1);
+                current = next;
+                return next.number;
+            } finally {
+                open = false;
+                writeLock.unlock();
+            }
+        }
+
+        /**
+         * Throws the changes away if the batch was not published.
+         */
+        @Override
+        public void close() {
+            if (open) {
+                open = false;
+                writeLock.unlock();
+            }
+        }
+
+        private void checkOpen() {
+            if (!open) {
+                throw new IllegalStateException("batch is already closed");
+            }
+        }
+
+        private Integer id(String name) {
+            Integer state = ids.get(name);
+            return state != null ? state : added.get(name);
+        }
+
+        /**
+         * Returns the page holding a state, copying it first if this
+         * batch has not changed it yet.
+         */
+        private Page page(int state) {
+            int index = state >>> SHIFT;
+            if (pages == null) {
+                pages = base.pages.clone();
+            }
+            if (index >= pages.length) {
+                pages = Arrays.copyOf(pages, index + 1);
+            }
+
+            Page page = pages[index];
+            if (page == null) {
+                page = new Page();
+                pages[index] = page;
+            } else if (index < copied.length && !copied[index]) {
+                page = page.copy();
+                pages[index] = page;
+                copied[index] = true;
+            }
+            return page;
+        }
+    }
+
+    private static int symbolOf(int[] symbolIndex, char c) {
+        return c < symbolIndex.length ? symbolIndex[c] : CompiledDFA.DEAD;
+    }
+
+    /**
+     * The transitions and final flags of PAGE consecutive states.
+     */
+    private static final class Page {
+        private final int[][] rows;    //rows[i][sym] = next state or DEAD
+        private final boolean[] finals;
+
+        Page() {
+            rows = new int[PAGE][];
+            finals = new boolean[PAGE];
+        }
+
+        private Page(int[][] rows, boolean[] finals) {
+            this.rows = rows;
+            this.finals = finals;
+        }
+
+        Page copy() {
+            int[][] copy = new int[PAGE][];
+            for (int i = 0; i < PAGE; i++) {
+                copy[i] = rows[i] != null ? rows[i].clone() : null;
+            }
+            return new Page(copy, finals.clone());
+        }
+    }
+
+    /**
+     * One published, immutable version of the DFA.
+     */
+    private static final class Version {
+        private final Page[] pages;
+        private final int stateCount;
+        private final char[] symbols;
+        private final int[] symbolIndex;
+        private final int start;
+        private final long number;
+
+        Version(Page[] pages, int stateCount, char[] symbols, int start, long number) {
+            this.pages = pages;
+            this.stateCount = stateCount;
+            this.symbols = symbols;
+            this.symbolIndex = CompiledDFA.indexSymbols(symbols);
+            this.start = start;
+            this.number = number;
+        }
+
+        boolean accepts(CharSequence s) {
+            if (s.length() == 0 || start == CompiledDFA.DEAD) return false;
+
+            DFAAcceptEvent event = DFAEvents.beginAccept();
+
+            int state = start;
+            int i = 0;
+            while (i < s.length() && state != CompiledDFA.DEAD) {
+                int sym = symbolOf(symbolIndex, s.charAt(i++));
+                if (sym == CompiledDFA.DEAD) {
+                    state = CompiledDFA.DEAD;
+                    break;
+                }
+
+                int[] row = pages[state >>> SHIFT].rows[state & MASK];
+                state = sym < row.length ? row[sym] : CompiledDFA.DEAD;
+            }
+
+            boolean result = state != CompiledDFA.DEAD && pages[state >>> SHIFT].finals[state & MASK];
+            DFAEvents.endAccept(event, "concurrent", s.length(), i, result);
+            return result;
+        }
+    }
+}
@@ -9,6 +9,7 @@
 
 package fa.dfa;
 import fa.State;
+import java.math.BigInteger;
 import java.util.*;
 
 public class DFA implements DFAInterface {
@@ -17,6 +18,8 @@ public class DFA implements DFAInterface {
     private DFAState initialState;  //Initial State. There can only be one.
     private Map<String, DFAState> finalStates;  //Map with our final states.
     private Set<Character> sigma;   //Represents our alphabet
+    private volatile CompiledDFA compiled;  //Table form of the DFA, rebuilt after any change
+    private volatile PrefixCache prefixCache;   //Optional cache of prefix states, null when off
 
     /**
      * Constructor for new DFA
@@ -28,6 +31,67 @@ public class DFA implements DFAInterface {
         sigma = new LinkedHashSet<>();
     }
 
+    /**
+     * Constructor for a new DFA whose maps are sized up front,
+     * so bulk loading does not rehash them over and over.
+     *
+     * @param expectedStates the number of states the DFA will get
+     * @param expectedSymbols the number of symbols in the alphabet
+     */
+    DFA(int expectedStates, int expectedSymbols) {
+        dfa = new LinkedHashMap<>(capacityFor(expectedStates));
+        finalStates = new LinkedHashMap<>();
+        initialState = null;
+        sigma = new LinkedHashSet<>(capacityFor(expectedSymbols));
+    }
+
+    /**
+     * Adds a state without checking for an existing one.
+     * Used by DFABuilder, which checks its states itself.
+     *
+     * @param name is the label of the state
+     * @param expectedTransitions the number of transitions the state will get
+     * @return the new state
+     */
+    DFAState loadState(String name, int expectedTransitions) {
+        DFAState state = new DFAState(name, expectedTransitions);
+        dfa.put(name, state);
+        invalidate();
+        return state;
+    }
+
+    /**
+     * @return the states, in the order they were added
+     */
+    Collection<DFAState> states() {
+        return dfa.values();
+    }
+
+    /**
+     * @return the final states, in the order they were made final
+     */
+    Collection<DFAState> finals() {
+        return finalStates.values();
+    }
+
+    /**
+     * @return the start state, or null if there is none
+     */
+    DFAState startState() {
+        return initialState;
+    }
+
+    /**
+     * Computes a hash map capacity that holds the given
+     * number of entries without resizing.
+     *
+     * @param expected the number of entries
+     * @return the initial capacity
+     */
+    static int capacityFor(int expected) {
+        return (int) Math.min(1L << 30, (long) expected * 4 / 3 + 1);
+    }
+
     /**
      * Adds a state to the state machine
      *
@@ -39,6 +103,7 @@ public class DFA implements DFAInterface {
 
         if (!dfa.containsKey(name)) {
             dfa.put(name, new DFAState(name));
+            invalidate();
             return true;
         }
 
@@ -59,6 +124,7 @@ public class DFA implements DFAInterface {
             finalState = dfa.get(name);
             finalState.makeFinalState();
             finalStates.put(name, finalState);
+            invalidate();
             return true;
         }
 
@@ -76,6 +142,7 @@ public class DFA implements DFAInterface {
 
         if (dfa.containsKey(name)) {
             initialState = dfa.get(name);
+            invalidate();
             return true;
         }
 
@@ -89,27 +156,28 @@ public class DFA implements DFAInterface {
      */
     @Override
     public void addSigma(char symbol) {
-        sigma.add(symbol);
+        if (sigma.add(symbol)) {
+            invalidate();
+        }
     }
 
     /**
-     * Function determining if a state is accepted or not
+     * Function determining if a state is accepted or not.
+     * Walks the input one symbol at a time, so long inputs
+     * neither copy substrings nor grow the stack.
      *
      * @param s
      * @param state
      * @return a boolean based on the acceptance of a state
      */
     public boolean accepts(String s, DFAState state) {
-        if(state == null)
-        {
-            return false;
-        }
-        else if(s.length() == 1){
-            return finalStates.containsValue(state.getTransistion(s.charAt(0)));
-        }
-        else{
-            return accepts(s.substring(1), state.getTransistion(s.charAt(0)));
+        if (s.isEmpty()) return false;
+
+        for (int i = 0; i < s.length() && state != null; i++) {
+            state = state.getTransistion(s.charAt(i));
         }
+
+        return state != null && state.isFinal();
     }
 
     /**
@@ -121,7 +189,184 @@ public class DFA implements DFAInterface {
     @Override
     public boolean accepts(String s){
         if(s.isEmpty() || initialState == null) return false;
-        return accepts(s, initialState);
+        PrefixCache cache = prefixCache;
+        DFAAcceptEvent event = DFAEvents.beginAccept();
+        if (cache != null) {
+            boolean result = cache.accepts(compile(), s);
+            DFAEvents.endAccept(event, "prefixCache", s.length(), -1, result);
+            return result;
+        }
+        if (event == null) return accepts(s, initialState);
+
+        //Sampled run: same walk, but counting the steps
+        DFAState state = initialState;
+        int steps = 0;
+        while (steps < s.length() && state != null) {
+            state = state.getTransistion(s.charAt(steps++));
+        }
+        boolean result = state != null && state.isFinal();
+        DFAEvents.endAccept(event, "dfa", s.length(), steps, result);
+        return result;
+    }
+
+    /**
+     * Turns on caching of the states reached by input prefixes, so
+     * accepts can resume from the longest prefix it has seen before.
+     * The cache is cleared whenever the DFA changes.
+     *
+     * @param maxEntries the largest number of prefixes to keep
+     * @param maxDepth the longest prefix to keep
+     * @return the new cache, for its statistics
+     */
+    public PrefixCache enablePrefixCache(int maxEntries, int maxDepth) {
+        PrefixCache cache = new PrefixCache(maxEntries, maxDepth);
+        prefixCache = cache;
+        return cache;
+    }
+
+    /**
+     * Turns off the prefix cache.
+     */
+    public void disablePrefixCache() {
+        prefixCache = null;
+    }
+
+    /**
+     * @return the prefix cache, or null if it is off
+     */
+    public PrefixCache getPrefixCache() {
+        return prefixCache;
+    }
+
+    /**
+     * checks if the DFA will accept the input string, splitting
+     * long inputs across all cores. See CompiledDFA.acceptsParallel.
+     *
+     * @param s - the input string
+     * @return true if s is accepted
+     */
+    public boolean acceptsParallel(CharSequence s) {
+        return compile().acceptsParallel(s);
+    }
+
+    /**
+     * Counts the strings of a given length that the DFA accepts.
+     * Like accepts, the empty string is never counted.
+     *
+     * @param n the length of the strings
+     * @return the number of accepted strings of length n
+     */
+    public BigInteger countAccepted(int n) {
+        return LanguageCounter.count(compile(), n);
+    }
+
+    /**
+     * Counts the strings of a given length that the DFA accepts, modulo m.
+     *
+     * @param n the length of the strings
+     * @param m the modulus, at least 1
+     * @return the number of accepted strings of length n, modulo m
+     */
+    public long countAccepted(int n, long m) {
+        return LanguageCounter.count(compile(), n, m);
+    }
+
+    /**
+     * Finds a shortest non-empty string the DFA accepts.
+     *
+     * @return the string, or null if the DFA accepts nothing
+     */
+    public String shortestAccepted() {
+        return LanguageCounter.shortest(compile());
+    }
+
+    /**
+     * Creates a sampler that draws accepted strings of a given
+     * length uniformly at random.
+     *
+     * @param length the length of the strings
+     * @param random the source of randomness
+     * @return the sampler
+     */
+    public AcceptedSampler sampleAccepted(int length, Random random) {
+        return new AcceptedSampler(compile(), length, random);
+    }
+
+    /**
+     * Hashes the language of the DFA. DFAs that accept the same
+     * strings get the same fingerprint. See CompiledDFA.canonical.
+     *
+     * @return the 128-bit fingerprint
+     */
+    public DFAFingerprint fingerprint() {
+        return compile().fingerprint();
+    }
+
+    /**
+     * Creates a matcher that keeps track of whether this DFA accepts
+     * a document while the document is edited.
+     *
+     * @param text the initial document
+     * @return the incremental matcher
+     */
+    public IncrementalMatcher incrementalMatcher(CharSequence text) {
+        return new IncrementalMatcher(compile(), text);
+    }
+
+    /**
+     * Returns the table form of this DFA. The result is cached
+     * until the DFA is changed.
+     *
+     * @return the compiled DFA
+     */
+    public CompiledDFA compile() {
+        CompiledDFA result = compiled;
+        if (result == null) {
+            DFAOperationEvent event = DFAEvents.beginOperation();
+            result = CompiledDFA.of(dfa.values(), sigma, initialState);
+            compiled = result;
+            DFAEvents.endOperation(event, "compile", dfa.size(), event != null ? transitionCount() : 0);
+        }
+        return result;
+    }
+
+    /**
+     * Recompiles the DFA with its states laid out by how often the
+     * sample inputs visit them, and uses that table until the DFA
+     * changes. See CompiledDFA.withProfiledLayout.
+     *
+     * @param samples typical inputs
+     * @return the compiled DFA
+     */
+    public CompiledDFA optimizeLayout(Iterable<? extends CharSequence> samples) {
+        CompiledDFA table = compile();
+        DFAOperationEvent event = DFAEvents.beginOperation();
+        CompiledDFA result = table.withProfiledLayout(samples);
+        compiled = result;
+        DFAEvents.endOperation(event, "layout", dfa.size(), event != null ? transitionCount() : 0);
+        return result;
+    }
+
+    /**
+     * @return the number of transitions, for events
+     */
+    private long transitionCount() {
+        long count = 0;
+        for (DFAState state : dfa.values()) {
+            count += state.transitionCount();
+        }
+        return count;
+    }
+
+    /**
+     * Drops the cached compiled DFA and prefix states after a change.
+     */
+    private void invalidate() {
+        compiled = null;
+        PrefixCache cache = prefixCache;
+        if (cache != null) {
+            cache.clear();
+        }
     }
 
     /**
@@ -188,6 +433,7 @@ public class DFA implements DFAInterface {
             DFAState to = dfa.get(toState);
 
             from.createNewTransition(onSymb, to);
+            invalidate();
             return true;
         }
 
@@ -203,6 +449,7 @@ public class DFA implements DFAInterface {
      */
     @Override
     public DFA swap(char symb1, char symb2) {
+        DFAOperationEvent event = DFAEvents.beginOperation();
         DFA newDFA = new DFA();
 
         //Copy the alphabet and states, setting up the initial and final states as necessary
@@ -238,11 +485,233 @@ public class DFA implements DFAInterface {
             }
         }
 
+        DFAEvents.endOperation(event, "swap", newDFA.dfa.size(), event != null ? newDFA.transitionCount() : 0);
         return newDFA;
     }
 
 
 
+    /**
+     * Creates a copy of this DFA in which every state has a
+     * transition on every symbol. Missing transitions go to a
+     * sink state: an existing non-final state that loops to itself
+     * on every symbol if there is one, otherwise a new state named
+     * "sink" (or "sink1", "sink2", ... if that name is taken).
+     * State names and order are kept, and a new sink comes last.
+     *
+     * @return a complete copy of this DFA
+     */
+    public DFA complete() {
+        return completed(false);
+    }
+
+    /**
+     * Creates a complete copy of this DFA with final and non-final
+     * states swapped, so it accepts exactly the strings over the
+     * alphabet that this DFA rejects. Like accepts, the complement
+     * never accepts the empty string or symbols outside the alphabet.
+     *
+     * @return the complement of this DFA
+     */
+    public DFA complement() {
+        return completed(true);
+    }
+
+    /**
+     * Builds the reverse of this DFA: it accepts a string exactly
+     * when this DFA accepts the string read backwards. The reverse
+     * is built by subset construction, so each of its states is named
+     * after the set of states of this DFA it stands for, as in
+     * "{a,b}". The result is the smallest DFA for the reversed
+     * strings, but a DFA with n states can have a reverse with up to
+     * 2^n states. Reversing twice therefore also minimizes a DFA
+     * (Brzozowski's algorithm); minimize is the faster way to do that.
+     * There is no limit on the number of states; use reverse(int) to
+     * set one.
+     *
+     * @return the reversed DFA
+     */
+    public DFA reverse() {
+        return reverse(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Builds the reverse of this DFA, as reverse() does, but gives up
+     * once the reverse needs more than maxStates states.
+     *
+     * @param maxStates the most states the reverse may have
+     * @return the reversed DFA
+     * @throws IllegalStateException if the reverse needs more than maxStates states
+     */
+    public DFA reverse(int maxStates) {
+        DFAOperationEvent event = DFAEvents.beginOperation();
+        CompiledDFA reversed = Reverser.reverse(compile(), true, maxStates);
+        DFAEvents.endOperation(event, "reverse", reversed.stateCount(), event != null ? reversed.transitionCount() : 0);
+        return of(reversed);
+    }
+
+    /**
+     * Builds the smallest DFA that accepts the same strings, using
+     * Hopcroft's algorithm (see CompiledDFA.minimize). States that
+     * cannot be reached or cannot reach a final state are left out,
+     * and each state is named after one of the states it replaces.
+     *
+     * @return the minimal DFA
+     */
+    public DFA minimize() {
+        return of(compile().minimize());
+    }
+
+    /**
+     * Creates a matcher that reads inputs from the end and stops as
+     * soon as the answer is known. See SuffixMatcher. The matcher
+     * holds the reverse of this DFA, which for n states can have up
+     * to 2^n states; use suffixMatcher(int) to limit it.
+     *
+     * @return the suffix matcher
+     */
+    public SuffixMatcher suffixMatcher() {
+        return suffixMatcher(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Creates a suffix matcher, as suffixMatcher() does, but gives up
+     * once the reversed DFA needs more than maxStates states.
+     *
+     * @param maxStates the most states the reversed DFA may have
+     * @return the suffix matcher
+     * @throws IllegalStateException if the reverse needs more than maxStates states
+     */
+    public SuffixMatcher suffixMatcher(int maxStates) {
+        return new SuffixMatcher(compile(), maxStates);
+    }
+
+    /**
+     * Copies a compiled DFA into a new DFA, in state id order.
+     *
+     * @param table the compiled DFA
+     * @return the new DFA
+     */
+    static DFA of(CompiledDFA table) {
+        int n = table.stateCount();
+        int k = table.symbolCount();
+        DFA result = new DFA(n, k);
+        for (int sym = 0; sym < k; sym++) {
+            result.addSigma(table.symbol(sym));
+        }
+
+        DFAState[] states = new DFAState[n];
+        for (int q = 0; q < n; q++) {
+            states[q] = result.loadState(table.name(q), k);
+        }
+        for (int q = 0; q < n; q++) {
+            for (int sym = 0; sym < k; sym++) {
+                int t = table.next(q, sym);
+                if (t != CompiledDFA.DEAD) {
+                    states[q].createNewTransition(table.symbol(sym), states[t]);
+                }
+            }
+            if (table.isAccepting(q)) {
+                result.setFinal(table.name(q));
+            }
+        }
+        if (table.startState() != CompiledDFA.DEAD) {
+            result.setStart(table.name(table.startState()));
+        }
+        return result;
+    }
+
+    /**
+     * Copies the DFA, sending missing transitions to a sink state,
+     * and optionally flips which states are final.
+     *
+     * @param flip true to make final states non-final and the other way around
+     * @return the completed copy
+     */
+    private DFA completed(boolean flip) {
+        DFAOperationEvent event = DFAEvents.beginOperation();
+        DFA result = new DFA(dfa.size() + 1, sigma.size());
+        for (char symbol : sigma) {
+            result.addSigma(symbol);
+        }
+
+        DFAState oldSink = findSink();
+        Map<DFAState, DFAState> copies = new HashMap<>(capacityFor(dfa.size()));
+        for (DFAState state : dfa.values()) {
+            copies.put(state, result.loadState(state.getName(), sigma.size()));
+            if (state.isFinal() != flip) {
+                result.setFinal(state.getName());
+            }
+        }
+        if (initialState != null) {
+            result.setStart(initialState.getName());
+        }
+
+        DFAState sink = oldSink != null ? copies.get(oldSink) : null;
+        for (DFAState state : dfa.values()) {
+            DFAState from = copies.get(state);
+            for (char symbol : sigma) {
+                DFAState to = state.getTransistion(symbol);
+                if (to != null) {
+                    from.createNewTransition(symbol, copies.get(to));
+                    continue;
+                }
+
+                if (sink == null) {
+                    sink = result.newSink(flip);
+                }
+                from.createNewTransition(symbol, sink);
+            }
+        }
+
+        DFAEvents.endOperation(event, flip ? "complement" : "complete", result.dfa.size(),
+                (long) result.dfa.size() * sigma.size());
+        return result;
+    }
+
+    /**
+     * @return a non-final state that loops to itself on every symbol, or null
+     */
+    private DFAState findSink() {
+        for (DFAState state : dfa.values()) {
+            if (state.isFinal()) continue;
+
+            boolean loops = true;
+            for (char symbol : sigma) {
+                if (state.getTransistion(symbol) != state) {
+                    loops = false;
+                    break;
+                }
+            }
+            if (loops) {
+                return state;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Adds a new sink state with a name no other state has.
+     *
+     * @param isFinal true if the sink should be final
+     * @return the sink state
+     */
+    private DFAState newSink(boolean isFinal) {
+        String name = "sink";
+        for (int i = 1; dfa.containsKey(name); i++) {
+            name = "sink" + i;
+        }
+
+        DFAState sink = loadState(name, sigma.size());
+        for (char symbol : sigma) {
+            sink.createNewTransition(symbol, sink);
+        }
+        if (isFinal) {
+            setFinal(name);
+        }
+        return sink;
+    }
+
     /**
      * toString method. Parses through the different
      * sets and maps and populates the string
@@ -252,6 +721,7 @@ public class DFA implements DFAInterface {
      * @return a string
      */
     public String toString() {
+        DFAOperationEvent event = DFAEvents.beginOperation();
 
         StringBuilder builder = new StringBuilder();
 
@@ -267,7 +737,9 @@ public class DFA implements DFAInterface {
         for (char symbol : sigma) {
             builder.append(symbol).append(" ");
         }
-        builder.deleteCharAt(builder.length() - 1);     //Needed to remove extra whitespace.
+        if (builder.charAt(builder.length() - 1) == ' ') {
+            builder.deleteCharAt(builder.length() - 1);     //Needed to remove extra whitespace.
+        }
         builder.append("}\n");
 
         //Delta columns
@@ -309,9 +781,12 @@ public class DFA implements DFAInterface {
             builder.append(stateName);
             builder.append(" ");
         }
-        builder.deleteCharAt(builder.length() - 1);     //Needed to remove extra whitespace.
+        if (builder.charAt(builder.length() - 1) == ' ') {
+            builder.deleteCharAt(builder.length() - 1);     //Needed to remove extra whitespace.
+        }
         builder.append("}\n");
 
+        DFAEvents.endOperation(event, "toString", dfa.size(), event != null ? transitionCount() : 0);
         return builder.toString();
     }
 }
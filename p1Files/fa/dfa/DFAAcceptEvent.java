@@ -0,0 +1,38 @@
+/**
+ * Flight Recorder event for one sampled acceptance check.
+ * Only one check in DFAEvents.ACCEPT_SAMPLE_RATE is recorded.
+ *
+ * @author Josh Miller and Jack Garcia
+ */
+
+
+package fa.dfa;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("fa.dfa.Accept")
+@Label("DFA Accept")
+@Category("DFA")
+@Description("A sampled check of whether a DFA accepts an input")
+@StackTrace(false)
+final class DFAAcceptEvent extends Event {
+
+    @Label("Engine")
+    @Description("dfa, prefixCache, compiled, parallel, batch, offHeap, concurrent, incremental, set or suffix")
+    String engine;
+
+    @Label("Input Length")
+    int inputLength;
+
+    @Label("Steps")
+    @Description("Symbols read before the result was known, or -1 if the engine does not count them")
+    int steps;
+
+    @Label("Accepted")
+    boolean accepted;
+}
@@ -0,0 +1,260 @@
+/**
+ * Builds large DFAs in bulk. States, symbols and transitions are
+ * only collected while loading, and everything is checked once in
+ * build(), which then fills maps that were sized up front. Use this
+ * instead of many addState and addTransition calls on a DFA.
+ *
+ * @author Josh Miller and Jack Garcia
+ */
+
+
+package fa.dfa;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class DFABuilder {
+
+    private final Set<Character> sigma;    //Alphabet in insertion order
+    private final List<String> states;     //State labels in insertion order
+    private final Map<String, Integer> stateIds;   //State label to position in states
+    private final List<String> finals;     //Labels passed to setFinal
+    private String start;  //Label passed to setStart
+
+    private String[] fromStates;   //Pending transitions, as parallel arrays
+    private char[] onSymbols;
+    private String[] toStates;
+    private int transitionCount;
+
+    /**
+     * Constructor for a builder with default sizes.
+     */
+    public DFABuilder() {
+        this(16, 4);
+    }
+
+    /**
+     * Constructor for a builder sized for the given DFA.
+     *
+     * @param expectedStates the number of states the DFA will have
+     * @param expectedSymbols the number of symbols in the alphabet
+     */
+    public DFABuilder(int expectedStates, int expectedSymbols) {
+        sigma = new LinkedHashSet<>(DFA.capacityFor(expectedSymbols));
+        states = new ArrayList<>(expectedStates);
+        stateIds = new HashMap<>(DFA.capacityFor(expectedStates));
+        finals = new ArrayList<>();
+
+        int expectedTransitions = (int) Math.min(Integer.MAX_VALUE - 8, (long) expectedStates * Math.max(1, expectedSymbols));
+        fromStates = new String[Math.max(16, expectedTransitions)];
+        onSymbols = new char[fromStates.length];
+        toStates = new String[fromStates.length];
+    }
+
+    /**
+     * Adds a symbol to the alphabet
+     *
+     * @param symbol to add to the alphabet set
+     */
+    public void addSigma(char symbol) {
+        sigma.add(symbol);
+    }
+
+    /**
+     * Adds a state
+     *
+     * @param name is the label of the state
+     * @return true unless a state with that name was already added
+     */
+    public boolean addState(String name) {
+        if (stateIds.putIfAbsent(name, states.size()) == null) {
+            states.add(name);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Sets the start state. The state is checked in build().
+     *
+     * @param name is the label of the start state
+     */
+    public void setStart(String name) {
+        start = name;
+    }
+
+    /**
+     * Marks a state as final. The state is checked in build().
+     *
+     * @param name is the label of the state
+     */
+    public void setFinal(String name) {
+        finals.add(name);
+    }
+
+    /**
+     * Adds a transition. The states and symbol are checked in build().
+     *
+     * @param fromState is the label of the state where the transition starts
+     * @param toState is the label of the state where the transition ends
+     * @param onSymb is the symbol from the DFA's alphabet.
+     */
+    public void addTransition(String fromState, String toState, char onSymb) {
+        ensureCapacity(transitionCount + 1);
+        fromStates[transitionCount] = fromState;
+        onSymbols[transitionCount] = onSymb;
+        toStates[transitionCount] = toState;
+        transitionCount++;
+    }
+
+    /**
+     * Adds many transitions at once. Transition i goes from
+     * fromStates[i] to toStates[i] on onSymbols[i].
+     *
+     * @param fromStates the labels of the states where the transitions start
+     * @param onSymbols the symbols of the transitions
+     * @param toStates the labels of the states where the transitions end
+     */
+    public void addTransitions(String[] fromStates, char[] onSymbols, String[] toStates) {
+        if (fromStates.length != onSymbols.length || fromStates.length != toStates.length) {
+            throw new IllegalArgumentException("transition arrays must have the same length");
+        }
+
+        ensureCapacity(transitionCount + fromStates.length);
+        System.arraycopy(fromStates, 0, this.fromStates, transitionCount, fromStates.length);
+        System.arraycopy(onSymbols, 0, this.onSymbols, transitionCount, onSymbols.length);
+        System.arraycopy(toStates, 0, this.toStates, transitionCount, toStates.length);
+        transitionCount += fromStates.length;
+    }
+
+    /**
+     * Builds the DFA. Later transitions for the same state and
+     * symbol replace earlier ones, like DFA.addTransition.
+     *
+     * @return the new DFA
+     * @throws IllegalStateException if a transition, the start state or a
+     *         final state names an unknown state or symbol
+     */
+    public DFA build() {
+        DFAOperationEvent event = DFAEvents.beginOperation();
+        int[][] ids = resolveTransitions();
+        int[] fromIds = ids[0];
+        int[] toIds = ids[1];
+
+        DFA result = new DFA(states.size(), sigma.size());
+        for (char symbol : sigma) {
+            result.addSigma(symbol);
+        }
+
+        DFAState[] loaded = new DFAState[states.size()];
+        for (int i = 0; i < loaded.length; i++) {
+            loaded[i] = result.loadState(states.get(i), sigma.size());
+        }
+        for (int i = 0; i < transitionCount; i++) {
+            loaded[fromIds[i]].createNewTransition(onSymbols[i], loaded[toIds[i]]);
+        }
+
+        if (start != null) {
+            result.setStart(start);
+        }
+        for (String name : finals) {
+            result.setFinal(name);
+        }
+        DFAEvents.endOperation(event, "build", states.size(), transitionCount);
+        return result;
+    }
+
+    /**
+     * Builds the compiled form of the DFA directly, without
+     * creating any DFAState objects.
+     *
+     * @return the new compiled DFA
+     * @throws IllegalStateException if a transition, the start state or a
+     *         final state names an unknown state or symbol
+     */
+    public CompiledDFA buildCompiled() {
+        DFAOperationEvent event = DFAEvents.beginOperation();
+        int[][] ids = resolveTransitions();
+        int[] fromIds = ids[0];
+        int[] toIds = ids[1];
+
+        char[] symbols = new char[sigma.size()];
+        int[] symbolIds = new int[Character.MAX_VALUE + 1];
+        int k = 0;
+        for (char symbol : sigma) {
+            symbolIds[symbol] = k;
+            symbols[k++] = symbol;
+        }
+
+        int n = states.size();
+        int[] delta = new int[n * symbols.length];
+        Arrays.fill(delta, CompiledDFA.DEAD);
+        for (int i = 0; i < transitionCount; i++) {
+            delta[fromIds[i] * symbols.length + symbolIds[onSymbols[i]]] = toIds[i];
+        }
+
+        boolean[] accepting = new boolean[n];
+        for (String name : finals) {
+            accepting[stateIds.get(name)] = true;
+        }
+
+        String[] names = states.toArray(new String[0]);
+        int startId = start != null ? stateIds.get(start) : CompiledDFA.DEAD;
+        CompiledDFA result = new CompiledDFA(names, symbols, delta, accepting, startId).withBreadthFirstLayout();
+        DFAEvents.endOperation(event, "buildCompiled", n, transitionCount);
+        return result;
+    }
+
+    /**
+     * Checks every state and symbol that was used, and looks up the
+     * state ids of all transitions in the same pass.
+     *
+     * @return the ids of the from states and of the to states
+     */
+    private int[][] resolveTransitions() {
+        if (start != null && !stateIds.containsKey(start)) {
+            throw new IllegalStateException("unknown start state " + start);
+        }
+        for (String name : finals) {
+            if (!stateIds.containsKey(name)) {
+                throw new IllegalStateException("unknown final state " + name);
+            }
+        }
+
+        boolean[] inSigma = new boolean[Character.MAX_VALUE + 1];
+        for (char symbol : sigma) {
+            inSigma[symbol] = true;
+        }
+
+        int[] fromIds = new int[transitionCount];
+        int[] toIds = new int[transitionCount];
+        for (int i = 0; i < transitionCount; i++) {
+            Integer from = stateIds.get(fromStates[i]);
+            Integer to = stateIds.get(toStates[i]);
+            if (from == null || to == null || !inSigma[onSymbols[i]]) {
+                throw new IllegalStateException("invalid transition " + fromStates[i] + " -"
+                        + onSymbols[i] + "-> " + toStates[i]);
+            }
+            fromIds[i] = from;
+            toIds[i] = to;
+        }
+        return new int[][] {fromIds, toIds};
+    }
+
+    /**
+     * Grows the transition arrays to hold at least the given number of transitions.
+     */
+    private void ensureCapacity(int needed) {
+        if (needed <= fromStates.length) return;
+
+        int size = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(needed, fromStates.length * 2L));
+        fromStates = Arrays.copyOf(fromStates, size);
+        onSymbols = Arrays.copyOf(onSymbols, size);
+        toStates = Arrays.copyOf(toStates, size);
+    }
+}
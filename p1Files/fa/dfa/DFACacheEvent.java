@@ -0,0 +1,46 @@
+/**
+ * Flight Recorder event for prefix cache maintenance: clearing the
+ * cache or evicting prefixes from it. Hits and misses are not
+ * recorded one by one; PrefixCache counts the symbols it skipped
+ * and read instead.
+ *
+ * @author Josh Miller and Jack Garcia
+ */
+
+
+package fa.dfa;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("fa.dfa.Cache")
+@Label("DFA Prefix Cache")
+@Category("DFA")
+@Description("Clearing a prefix cache or evicting prefixes from it")
+@StackTrace(false)
+final class DFACacheEvent extends Event {
+
+    @Label("Action")
+    @Description("clear or evict")
+    String action;
+
+    @Label("Removed")
+    @Description("Number of prefixes removed")
+    int removed;
+
+    @Label("Size")
+    @Description("Number of prefixes left in the cache")
+    int size;
+
+    @Label("Hits")
+    @Description("Input symbols skipped by resuming from a cached prefix")
+    long hits;
+
+    @Label("Misses")
+    @Description("Input symbols past the cached prefix")
+    long misses;
+}
@@ -0,0 +1,98 @@
+/**
+ * Starts and commits the Flight Recorder events of this package.
+ * When no recording has an event enabled, each call costs one
+ * check of a flag. Acceptance checks are sampled on top of that:
+ * only one in ACCEPT_SAMPLE_RATE is recorded, so the events can
+ * stay enabled in production. The rate can be changed with the
+ * system property fa.dfa.jfr.acceptSampleRate.
+ *
+ * @author Josh Miller and Jack Garcia
+ */
+
+
+package fa.dfa;
+
+import java.util.concurrent.ThreadLocalRandom;
+import jdk.jfr.EventType;
+
+final class DFAEvents {
+
+    static final int ACCEPT_SAMPLE_RATE = Math.max(1, Integer.getInteger("fa.dfa.jfr.acceptSampleRate", 1024));
+
+    private static final EventType OPERATION = EventType.getEventType(DFAOperationEvent.class);
+    private static final EventType ACCEPT = EventType.getEventType(DFAAcceptEvent.class);
+    private static final EventType CACHE = EventType.getEventType(DFACacheEvent.class);
+
+    private DFAEvents() {
+    }
+
+    /**
+     * @return a started operation event, or null if the event is off
+     */
+    static DFAOperationEvent beginOperation() {
+        if (!OPERATION.isEnabled()) return null;
+
+        DFAOperationEvent event = new DFAOperationEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends and commits an operation event. Does nothing for null.
+     */
+    static void endOperation(DFAOperationEvent event, String operation, int states, long transitions) {
+        if (event == null) return;
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = operation;
+            event.states = states;
+            event.transitions = transitions;
+            event.commit();
+        }
+    }
+
+    /**
+     * @return a started accept event, or null if the event is off or this check is not sampled
+     */
+    static DFAAcceptEvent beginAccept() {
+        if (!ACCEPT.isEnabled() || ThreadLocalRandom.current().nextInt(ACCEPT_SAMPLE_RATE) != 0) return null;
+
+        DFAAcceptEvent event = new DFAAcceptEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends and commits an accept event. Does nothing for null.
+     */
+    static void endAccept(DFAAcceptEvent event, String engine, int inputLength, int steps, boolean accepted) {
+        if (event == null) return;
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.engine = engine;
+            event.inputLength = inputLength;
+            event.steps = steps;
+            event.accepted = accepted;
+            event.commit();
+        }
+    }
+
+    /**
+     * Records a prefix cache clear or eviction.
+     */
+    static void cache(String action, int removed, int size, long hits, long misses) {
+        if (!CACHE.isEnabled()) return;
+
+        DFACacheEvent event = new DFACacheEvent();
+        if (event.shouldCommit()) {
+            event.action = action;
+            event.removed = removed;
+            event.size = size;
+            event.hits = hits;
+            event.misses = misses;
+            event.commit();
+        }
+    }
+}
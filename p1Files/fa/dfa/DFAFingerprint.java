@@ -0,0 +1,88 @@
+/**
+ * A 128-bit hash of the canonical form of a DFA. DFAs that accept
+ * the same strings have the same fingerprint, whatever their state
+ * names, state order, unused symbols or whether their start state is
+ * final (the empty string is never accepted anyway). The hash is the
+ * first 128 bits of SHA-256 over the canonical table, so it is the
+ * same on every JVM and run, and different languages colliding is
+ * not a practical concern.
+ *
+ * @author Josh Miller and Jack Garcia
+ */
+
+
+package fa.dfa;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+public final class DFAFingerprint {
+
+    private final long high;   //First 64 bits of the hash
+    private final long low;    //Next 64 bits of the hash
+
+    private DFAFingerprint(long high, long low) {
+        this.high = high;
+        this.low = low;
+    }
+
+    /**
+     * Hashes a DFA that is already in canonical form.
+     *
+     * @param canonical the output of Minimizer.canonical
+     * @return the fingerprint
+     */
+    static DFAFingerprint of(CompiledDFA canonical) {
+        int n = canonical.stateCount();
+        int k = canonical.symbolCount();
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(12 + 2 * k);
+        header.putInt(n).putInt(k).putInt(canonical.startState());
+        for (int sym = 0; sym < k; sym++) {
+            header.putChar(canonical.symbol(sym));
+        }
+        digest.update(header.array());
+
+        //One row at a time: the final flag, then the next state for each symbol
+        ByteBuffer row = ByteBuffer.allocate(1 + 4 * k);
+        for (int q = 0; q < n; q++) {
+            row.clear();
+            row.put((byte) (canonical.isAccepting(q) ? 1 : 0));
+            for (int sym = 0; sym < k; sym++) {
+                row.putInt(canonical.next(q, sym));
+            }
+            digest.update(row.array());
+        }
+
+        ByteBuffer hash = ByteBuffer.wrap(digest.digest());
+        return new DFAFingerprint(hash.getLong(), hash.getLong());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof DFAFingerprint)) return false;
+        DFAFingerprint other = (DFAFingerprint) o;
+        return high == other.high && low == other.low;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(high ^ low);
+    }
+
+    /**
+     * @return the fingerprint as 32 hex digits
+     */
+    @Override
+    public String toString() {
+        return String.format("%016x%016x", high, low);
+    }
+}
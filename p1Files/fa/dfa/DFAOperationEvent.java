@@ -0,0 +1,34 @@
+/**
+ * Flight Recorder event for work done on a whole DFA: building,
+ * compiling, laying out, copying or printing it.
+ *
+ * @author Josh Miller and Jack Garcia
+ */
+
+
+package fa.dfa;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("fa.dfa.Operation")
+@Label("DFA Operation")
+@Category("DFA")
+@Description("Building, compiling or copying a whole DFA")
+@StackTrace(false)
+final class DFAOperationEvent extends Event {
+
+    @Label("Operation")
+    @Description("build, buildCompiled, compile, layout, minimize, reverse, swap, complete, complement or toString")
+    String operation;
+
+    @Label("States")
+    int states;
+
+    @Label("Transitions")
+    long transitions;
+}
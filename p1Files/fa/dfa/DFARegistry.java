@@ -0,0 +1,106 @@
+/**
+ * Shares one compiled engine between DFAs that accept the same
+ * strings. Interning a DFA puts it in canonical form and looks the
+ * form up by its fingerprint; if an equal DFA was interned before
+ * and is still in use, that engine is returned instead of a new one.
+ *
+ * The registry only holds weak references, so an engine is dropped
+ * once nothing else refers to it. Lookups and interning do not lock.
+ *
+ * @author Josh Miller and Jack Garcia
+ */
+
+
+package fa.dfa;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class DFARegistry {
+
+    private final ConcurrentHashMap<DFAFingerprint, Entry> engines;
+    private final ReferenceQueue<CompiledDFA> cleared;     //Entries whose engine was collected
+
+    /**
+     * Creates an empty registry.
+     */
+    public DFARegistry() {
+        this.engines = new ConcurrentHashMap<>();
+        this.cleared = new ReferenceQueue<>();
+    }
+
+    /**
+     * Finds or adds the shared engine for a DFA.
+     *
+     * @param dfa the DFA
+     * @return the canonical compiled form, shared by every DFA with the same language
+     */
+    public CompiledDFA intern(DFA dfa) {
+        return intern(dfa.compile());
+    }
+
+    /**
+     * Finds or adds the shared engine for a compiled DFA.
+     *
+     * @param dfa the compiled DFA
+     * @return the canonical compiled form, shared by every DFA with the same language
+     */
+    public CompiledDFA intern(CompiledDFA dfa) {
+        expunge();
+        CompiledDFA canonical = dfa.canonical();
+        DFAFingerprint key = DFAFingerprint.of(canonical);
+
+        while (true) {
+            Entry entry = engines.get(key);
+            CompiledDFA existing = entry != null ? entry.get() : null;
+            if (existing != null) return existing;
+
+            Entry created = new Entry(key, canonical, cleared);
+            if (entry == null ? engines.putIfAbsent(key, created) == null : engines.replace(key, entry, created)) {
+                return canonical;
+            }
+        }
+    }
+
+    /**
+     * Looks up an engine by fingerprint without adding anything.
+     *
+     * @param fingerprint the fingerprint of the language
+     * @return the shared engine, or null if there is none
+     */
+    public CompiledDFA get(DFAFingerprint fingerprint) {
+        Entry entry = engines.get(fingerprint);
+        return entry != null ? entry.get() : null;
+    }
+
+    /**
+     * @return the number of engines still held, after dropping collected ones
+     */
+    public int size() {
+        expunge();
+        return engines.size();
+    }
+
+    /**
+     * Removes the entries whose engine has been garbage collected.
+     */
+    private void expunge() {
+        Entry entry;
+        while ((entry = (Entry) cleared.poll()) != null) {
+            engines.remove(entry.key, entry);
+        }
+    }
+
+    /**
+     * A weak reference to an engine that remembers its key.
+     */
+    private static final class Entry extends WeakReference<CompiledDFA> {
+        private final DFAFingerprint key;
+
+        Entry(DFAFingerprint key, CompiledDFA engine, ReferenceQueue<CompiledDFA> queue) {
+            super(engine, queue);
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/**
+ * Checks an input against many DFAs in one pass. All machines are
+ * stepped together, one character at a time, and a machine is
+ * dropped from the active set as soon as it reaches a state from
+ * which it can no longer accept. The pass ends early once every
+ * machine has been dropped.
+ *
+ * The set works on the DFAs as they were when the set was created.
+ * Like DFA.accepts, the empty string is never accepted.
+ *
+ * @author Josh Miller and Jack Garcia
+ */
+
+
+package fa.dfa;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+
+public class DFASet {
+
+    private final CompiledDFA[] tables;    //The machines, by index
+    private final boolean[][] live;    //live[m][q] is true if machine m can still accept from q
+    private final int[] startMachines;     //Machines whose start state is live
+    private final int[] startStates;   //Their start states
+
+    /**
+     * Creates a set of the given DFAs. Machine i is the i-th DFA
+     * in iteration order.
+     *
+     * @param dfas the DFAs
+     */
+    public DFASet(Collection<? extends DFA> dfas) {
+        tables = new CompiledDFA[dfas.size()];
+        live = new boolean[tables.length][];
+        List<Integer> machines = new ArrayList<>();
+        int m = 0;
+        for (DFA dfa : dfas) {
+            tables[m] = dfa.compile();
+            live[m] = tables[m].liveStates();
+            int start = tables[m].startState();
+            if (start != CompiledDFA.DEAD && live[m][start]) {
+                machines.add(m);
+            }
+            m++;
+        }
+
+        startMachines = new int[machines.size()];
+        startStates = new int[machines.size()];
+        for (int j = 0; j < startMachines.length; j++) {
+            startMachines[j] = machines.get(j);
+            startStates[j] = tables[startMachines[j]].startState();
+        }
+    }
+
+    /**
+     * @return the number of machines
+     */
+    public int size() {
+        return tables.length;
+    }
+
+    /**
+     * Finds the machines that accept the input string.
+     *
+     * @param s the input string
+     * @return the indexes of the accepting machines
+     */
+    public BitSet accepts(CharSequence s) {
+        BitSet result = new BitSet(tables.length);
+        if (s.length() == 0) return result;
+        DFAAcceptEvent event = DFAEvents.beginAccept();
+
+        //The active machines are kept packed at the front, so dropping one is a swap
+        int[] active = startMachines.clone();
+        int[] states = startStates.clone();
+        int count = active.length;
+        int i = 0;
+        while (i < s.length() && count > 0) {
+            char c = s.charAt(i++);
+            for (int j = 0; j < count; ) {
+                int m = active[j];
+                int t = tables[m].step(states[j], c);
+                if (t == CompiledDFA.DEAD || !live[m][t]) {
+                    count--;
+                    active[j] = active[count];
+                    states[j] = states[count];
+                    continue;
+                }
+                states[j] = t;
+                j++;
+            }
+        }
+
+        for (int j = 0; j < count; j++) {
+            if (tables[active[j]].isAccepting(states[j])) {
+                result.set(active[j]);
+            }
+        }
+        DFAEvents.endAccept(event, "set", s.length(), i, !result.isEmpty());
+        return result;
+    }
+}
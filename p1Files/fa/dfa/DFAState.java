@@ -28,6 +28,19 @@ public class DFAState extends State {
         this.transitions = new HashMap<>(); // Initialize the transition function
     }
 
+    /**
+     * Constructor for a DFAState whose transition map is sized
+     * up front for the given number of transitions.
+     *
+     * @param name The unique name for this state.
+     * @param expectedTransitions The number of transitions the state will get.
+     */
+    DFAState(String name, int expectedTransitions) {
+        super(name);
+        this.isFinal = false;
+        this.transitions = new HashMap<>(DFA.capacityFor(expectedTransitions));
+    }
+
     /**
      * Retrieves the next state for a given input symbol.
      *
@@ -57,4 +70,20 @@ public class DFAState extends State {
     public void makeFinalState() {
         this.isFinal = true;
     }
+
+    /**
+     * Checks if the state is a final state.
+     *
+     * @return true if the state is final
+     */
+    boolean isFinal() {
+        return isFinal;
+    }
+
+    /**
+     * @return the number of transitions out of this state
+     */
+    int transitionCount() {
+        return transitions.size();
+    }
 }
@@ -0,0 +1,239 @@
+/**
+ * An immutable hash map stored as a hash array mapped trie. Each
+ * level of the trie uses five bits of the key's hash to pick one of
+ * up to 32 children, and a node only stores the children it has, with
+ * a bitmap saying which ones. Putting a key copies the nodes on the
+ * path to it and shares everything else with the old map, so a new
+ * version costs a few small arrays rather than a copy of the map.
+ *
+ * Keys with the same full hash share a collision node. Null keys
+ * and values are not allowed.
+ *
+ * @author Josh Miller and Jack Garcia
+ */
+
+
+package fa.dfa;
+
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+
+final class HashTrie<K, V> {
+
+    private static final int BITS = 5;     //Hash bits used per level
+    private static final int MASK = (1 << BITS) - 1;
+    private static final HashTrie<?, ?> EMPTY = new HashTrie<>(new Node(0, new Object[0]), 0);
+
+    private final Node root;
+    private final int size;
+
+    private HashTrie(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * @return the empty map
+     */
+    @SuppressWarnings("unchecked")
+    static <K, V> HashTrie<K, V> empty() {
+        return (HashTrie<K, V>) EMPTY;
+    }
+
+    /**
+     * @return the number of keys
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @param key the key
+     * @return the value of the key, or null if it has none
+     */
+    @SuppressWarnings("unchecked")
+    V get(Object key) {
+        int hash = hash(key);
+        Object child = root;
+        for (int shift = 0; ; shift += BITS) {
+            if (child instanceof Node) {
+                Node node = (Node) child;
+                int bit = 1 << ((hash >>> shift) & MASK);
+                if ((node.bitmap & bit) == 0) return null;
+                child = node.children[Integer.bitCount(node.bitmap & (bit - 1))];
+            } else if (child instanceof Leaf) {
+                Leaf leaf = (Leaf) child;
+                return leaf.key.equals(key) ? (V) leaf.value : null;
+            } else {
+                for (Leaf leaf : ((Collision) child).leaves) {
+                    if (leaf.key.equals(key)) return (V) leaf.value;
+                }
+                return null;
+            }
+        }
+    }
+
+    /**
+     * @param key the key
+     * @return true if the key has a value
+     */
+    boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Returns a map with the key set to the value. This map is
+     * not changed. If the key already has an equal value, this
+     * map itself is returned.
+     *
+     * @param key the key
+     * @param value the value
+     * @return the new map
+     */
+    HashTrie<K, V> put(K key, V value) {
+        if (key == null || value == null) throw new IllegalArgumentException("null key or value");
+
+        boolean[] added = new boolean[1];
+        Node newRoot = (Node) put(root, 0, new Leaf(hash(key), key, value), added);
+        return newRoot == root ? this : new HashTrie<>(newRoot, added[0] ? size + 1 : size);
+    }
+
+    /**
+     * Calls the action for every key and value, in no particular order.
+     */
+    void forEach(BiConsumer<? super K, ? super V> action) {
+        forEach(root, action);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void forEach(Object child, BiConsumer<? super K, ? super V> action) {
+        if (child instanceof Node) {
+            for (Object grandchild : ((Node) child).children) {
+                forEach(grandchild, action);
+            }
+        } else if (child instanceof Leaf) {
+            Leaf leaf = (Leaf) child;
+            action.accept((K) leaf.key, (V) leaf.value);
+        } else {
+            for (Leaf leaf : ((Collision) child).leaves) {
+                action.accept((K) leaf.key, (V) leaf.value);
+            }
+        }
+    }
+
+    /**
+     * Puts a leaf below a child at the given level.
+     *
+     * @return the new child, or the same child if nothing changed
+     */
+    private static Object put(Object child, int shift, Leaf leaf, boolean[] added) {
+        if (child instanceof Node) {
+            Node node = (Node) child;
+            int bit = 1 << ((leaf.hash >>> shift) & MASK);
+            int index = Integer.bitCount(node.bitmap & (bit - 1));
+            if ((node.bitmap & bit) == 0) {
+                added[0] = true;
+                Object[] children = new Object[node.children.length + 1];
+                System.arraycopy(node.children, 0, children, 0, index);
+                children[index] = leaf;
+                System.arraycopy(node.children, index, children, index + 1, node.children.length - index);
+                return new Node(node.bitmap | bit, children);
+            }
+
+            Object old = node.children[index];
+            Object updated = put(old, shift + BITS, leaf, added);
+            if (updated == old) return node;
+            Object[] children = node.children.clone();
+            children[index] = updated;
+            return new Node(node.bitmap, children);
+        }
+
+        if (child instanceof Leaf) {
+            Leaf old = (Leaf) child;
+            if (old.key.equals(leaf.key)) {
+                return old.value.equals(leaf.value) ? old : leaf;
+            }
+            added[0] = true;
+            if (old.hash == leaf.hash) {
+                return new Collision(old.hash, new Leaf[] {old, leaf});
+            }
+            return split(child, old.hash, leaf, shift);
+        }
+
+        Collision collision = (Collision) child;
+        if (collision.hash != leaf.hash) {
+            added[0] = true;
+            return split(child, collision.hash, leaf, shift);
+        }
+        Leaf[] leaves = collision.leaves;
+        for (int i = 0; i < leaves.length; i++) {
+            if (leaves[i].key.equals(leaf.key)) {
+                if (leaves[i].value.equals(leaf.value)) return collision;
+                Leaf[] copy = leaves.clone();
+                copy[i] = leaf;
+                return new Collision(collision.hash, copy);
+            }
+        }
+        added[0] = true;
+        Leaf[] copy = Arrays.copyOf(leaves, leaves.length + 1);
+        copy[leaves.length] = leaf;
+        return new Collision(collision.hash, copy);
+    }
+
+    /**
+     * Builds the nodes that separate an existing child from a new
+     * leaf with a different hash, starting at the given level.
+     */
+    private static Node split(Object child, int childHash, Leaf leaf, int shift) {
+        int a = (childHash >>> shift) & MASK;
+        int b = (leaf.hash >>> shift) & MASK;
+        if (a == b) {
+            return new Node(1 << a, new Object[] {split(child, childHash, leaf, shift + BITS)});
+        }
+        Object[] children = a < b ? new Object[] {child, leaf} : new Object[] {leaf, child};
+        return new Node((1 << a) | (1 << b), children);
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * An inner node: children[i] is the child for the i-th set bit of bitmap.
+     */
+    private static final class Node {
+        private final int bitmap;
+        private final Object[] children;   //Nodes, leaves or collisions
+
+        Node(int bitmap, Object[] children) {
+            this.bitmap = bitmap;
+            this.children = children;
+        }
+    }
+
+    private static final class Leaf {
+        private final int hash;
+        private final Object key;
+        private final Object value;
+
+        Leaf(int hash, Object key, Object value) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Keys whose hashes are equal in all 32 bits.
+     */
+    private static final class Collision {
+        private final int hash;
+        private final Leaf[] leaves;
+
+        Collision(int hash, Leaf[] leaves) {
+            this.hash = hash;
+            this.leaves = leaves;
+        }
+    }
+}
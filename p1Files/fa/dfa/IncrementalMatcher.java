@@ -0,0 +1,306 @@
+/**
+ * Keeps track of whether a DFA accepts a document that is being
+ * edited. The document is split into blocks kept in a balanced
+ * tree (a treap ordered by position), and every node stores where
+ * its block and its whole subtree take each state. An edit only
+ * recomputes the nodes on the paths it touches, so checking the
+ * document after an edit does not rescan the whole text. Blocks
+ * next to an edit are regrouped so that every block holds at least
+ * half the block size unless the document has only one block, which
+ * keeps the number of nodes proportional to the document length
+ * however many edits are made.
+ *
+ * Every node holds two transfer maps with one int per DFA state, so
+ * the block size grows with the state count: it is the larger of
+ * MIN_BLOCK and the number of states. The maps then take at most 16
+ * bytes per character of the document, plus one block's worth for
+ * a short document, and an edit rescans at most a few blocks.
+ *
+ * The matcher works on the DFA as it was when the matcher was created.
+ *
+ * @author Josh Miller and Jack Garcia
+ */
+
+
+package fa.dfa;
+
+import java.util.Objects;
+import java.util.Random;
+
+public class IncrementalMatcher {
+
+    private static final int MIN_BLOCK = 256;  //Smallest block size, for small DFAs
+
+    private final CompiledDFA table;   //The DFA we are matching against
+    private final int blockSize;   //Largest number of characters in one block
+    private final Random random;   //Source of treap priorities
+    private Node root;     //Root of the block tree, null for an empty document
+
+    /**
+     * Creates a matcher for the given text.
+     *
+     * @param table the compiled DFA
+     * @param text the initial document
+     */
+    IncrementalMatcher(CompiledDFA table, CharSequence text) {
+        this.table = table;
+        this.blockSize = Math.max(MIN_BLOCK, table.stateCount());
+        this.random = new Random();
+        this.root = build(text);
+    }
+
+    /**
+     * Checks if the DFA accepts the current document.
+     * Like DFA.accepts, an empty document is never accepted.
+     *
+     * @return true if the document is accepted
+     */
+    public boolean accepts() {
+        int start = table.startState();
+        if (root == null || start == CompiledDFA.DEAD) return false;
+        DFAAcceptEvent event = DFAEvents.beginAccept();
+
+        //The answer is read off the root, without reading any symbols
+        int state = root.map[start];
+        boolean result = state != CompiledDFA.DEAD && table.isAccepting(state);
+        DFAEvents.endAccept(event, "incremental", root.size, 0, result);
+        return result;
+    }
+
+    /**
+     * Inserts text into the document.
+     *
+     * @param pos the index to insert at
+     * @param s the text to insert
+     */
+    public void insert(int pos, CharSequence s) {
+        Objects.checkIndex(pos, length() + 1);
+        if (s.length() == 0) return;
+
+        Node[] parts = split(root, pos);
+        root = join(join(parts[0], build(s)), parts[1]);
+    }
+
+    /**
+     * Deletes part of the document.
+     *
+     * @param pos the index of the first character to delete
+     * @param len the number of characters to delete
+     */
+    public void delete(int pos, int len) {
+        Objects.checkFromIndexSize(pos, len, length());
+        if (len == 0) return;
+
+        Node[] head = split(root, pos);
+        Node[] tail = split(head[1], len);
+        root = join(head[0], tail[1]);
+    }
+
+    /**
+     * Replaces part of the document with new text.
+     *
+     * @param pos the index of the first character to replace
+     * @param len the number of characters to replace
+     * @param s the replacement text
+     */
+    public void replace(int pos, int len, CharSequence s) {
+        delete(pos, len);
+        insert(pos, s);
+    }
+
+    /**
+     * @return the length of the document
+     */
+    public int length() {
+        return size(root);
+    }
+
+    /**
+     * @return the number of blocks the document is split into
+     */
+    public int blockCount() {
+        return count(root);
+    }
+
+    /**
+     * @return the current document
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(length());
+        append(root, builder);
+        return builder.toString();
+    }
+
+    /**
+     * Builds a tree holding the given text, in blocks of equal size.
+     * If there is more than one block, each holds at least blockSize / 2
+     * characters.
+     */
+    private Node build(CharSequence s) {
+        Node result = null;
+        int pieces = (s.length() + blockSize - 1) / blockSize;
+        for (int p = 0; p < pieces; p++) {
+            int from = (int) ((long) s.length() * p / pieces);
+            int to = (int) ((long) s.length() * (p + 1) / pieces);
+            result = merge(result, new Node(s.subSequence(from, to).toString(), random.nextInt()));
+        }
+        return result;
+    }
+
+    /**
+     * Joins two trees, all of a before all of b, where every block
+     * holds at least blockSize / 2 characters except maybe the last block
+     * of a and the first block of b, the ones an edit cut. A short
+     * block is rebuilt together with the block across the cut, and
+     * with further neighbours if that is still too short, so that
+     * afterwards every block of the result is long enough again.
+     */
+    private Node join(Node a, Node b) {
+        if ((a == null || last(a).block.length() >= blockSize / 2) && (b == null || first(b).block.length() >= blockSize / 2)) {
+            return merge(a, b);
+        }
+
+        Node[] left = a == null ? new Node[] {null, null} : split(a, a.size - last(a).block.length());
+        Node[] right = b == null ? new Node[] {null, null} : split(b, first(b).block.length());
+        if (size(left[1]) + size(right[0]) < blockSize / 2) {
+            //The neighbours are long enough, so one more on each side is enough
+            if (left[0] != null) {
+                Node[] more = split(left[0], left[0].size - last(left[0]).block.length());
+                left = new Node[] {more[0], merge(more[1], left[1])};
+            }
+            if (right[1] != null) {
+                Node[] more = split(right[1], first(right[1]).block.length());
+                right = new Node[] {merge(right[0], more[0]), more[1]};
+            }
+        }
+
+        StringBuilder text = new StringBuilder();
+        append(left[1], text);
+        append(right[0], text);
+        return merge(merge(left[0], build(text)), right[1]);
+    }
+
+    /**
+     * Splits a tree so that the first tree holds the first pos characters.
+     */
+    private Node[] split(Node node, int pos) {
+        if (node == null) return new Node[] {null, null};
+
+        int leftSize = size(node.left);
+        int blockEnd = leftSize + node.block.length();
+        Node[] parts;
+
+        if (pos <= leftSize) {
+            parts = split(node.left, pos);
+            node.left = parts[1];
+            update(node);
+            return new Node[] {parts[0], node};
+        } else if (pos >= blockEnd) {
+            parts = split(node.right, pos - blockEnd);
+            node.right = parts[0];
+            update(node);
+            return new Node[] {node, parts[1]};
+        }
+
+        //The split point is inside this node's block
+        int cut = pos - leftSize;
+        Node tail = new Node(node.block.substring(cut), random.nextInt());
+        Node right = merge(tail, node.right);
+        node.block = node.block.substring(0, cut);
+        node.blockMap = table.transfer(node.block, 0, node.block.length());
+        node.right = null;
+        update(node);
+        return new Node[] {node, right};
+    }
+
+    /**
+     * Joins two trees, all of a before all of b.
+     */
+    private Node merge(Node a, Node b) {
+        if (a == null) return b;
+        if (b == null) return a;
+
+        if (a.priority > b.priority) {
+            a.right = merge(a.right, b);
+            update(a);
+            return a;
+        }
+
+        b.left = merge(a, b.left);
+        update(b);
+        return b;
+    }
+
+    /**
+     * @return the rightmost node of a non-empty tree
+     */
+    private static Node last(Node node) {
+        while (node.right != null) {
+            node = node.right;
+        }
+        return node;
+    }
+
+    /**
+     * @return the leftmost node of a non-empty tree
+     */
+    private static Node first(Node node) {
+        while (node.left != null) {
+            node = node.left;
+        }
+        return node;
+    }
+
+    /**
+     * Recomputes the size and transfer function of a node from its children.
+     */
+    private static void update(Node node) {
+        node.size = size(node.left) + node.block.length() + size(node.right);
+
+        int[] map = node.blockMap;
+        if (node.left != null) {
+            map = CompiledDFA.compose(node.left.map, map);
+        }
+        if (node.right != null) {
+            map = CompiledDFA.compose(map, node.right.map);
+        }
+        node.map = map;
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static int count(Node node) {
+        return node == null ? 0 : count(node.left) + 1 + count(node.right);
+    }
+
+    private static void append(Node node, StringBuilder builder) {
+        if (node == null) return;
+        append(node.left, builder);
+        builder.append(node.block);
+        append(node.right, builder);
+    }
+
+    /**
+     * One block of the document.
+     */
+    private final class Node {
+        private String block;  //The characters of this block
+        private int[] blockMap;    //Transfer function of the block alone
+        private int[] map;     //Transfer function of the whole subtree
+        private int size;  //Number of characters in the subtree
+        private final int priority;
+        private Node left;
+        private Node right;
+
+        Node(String block, int priority) {
+            this.block = block;
+            this.blockMap = table.transfer(block, 0, block.length());
+            this.map = blockMap;
+            this.size = block.length();
+            this.priority = priority;
+        }
+    }
+}
@@ -0,0 +1,329 @@
+/**
+ * Counts and finds accepted strings of a compiled DFA without
+ * listing strings one at a time. Counting is dynamic programming
+ * over the states: the number of accepted strings of length k+1
+ * from a state is the sum, over the symbols, of the number of
+ * accepted strings of length k from the state the symbol leads to.
+ * For small DFAs and long lengths the same sum is done by raising
+ * the transition count matrix to the n-th power instead.
+ *
+ * Like DFA.accepts, the empty string is never counted as accepted.
+ *
+ * @author Josh Miller and Jack Garcia
+ */
+
+
+package fa.dfa;
+
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+final class LanguageCounter {
+
+    private static final int PARALLEL_STATES = 4096;   //Smallest DFA whose steps run in parallel
+    private static final int MATRIX_STATES = 64;   //Largest DFA counted with matrix powers
+
+    private LanguageCounter() {
+    }
+
+    /**
+     * Counts the accepted strings of a given length.
+     *
+     * @param dfa the compiled DFA
+     * @param n the length
+     * @return the number of accepted strings of length n
+     */
+    static BigInteger count(CompiledDFA dfa, int n) {
+        if (n < 0) throw new IllegalArgumentException("negative length " + n);
+        int start = dfa.startState();
+        if (n == 0 || start == CompiledDFA.DEAD) return BigInteger.ZERO;
+
+        if (useMatrix(dfa, n)) {
+            BigInteger[] row = new BigInteger[dfa.stateCount()];
+            Arrays.fill(row, BigInteger.ZERO);
+            row[start] = BigInteger.ONE;
+            BigInteger[][] power = matrix(dfa);
+
+            //row * M^n by squaring
+            for (int e = n; e > 0; e >>>= 1) {
+                if ((e & 1) != 0) {
+                    row = multiply(row, power);
+                }
+                if (e > 1) {
+                    power = multiply(power, power);
+                }
+            }
+
+            BigInteger total = BigInteger.ZERO;
+            for (int q = 0; q < row.length; q++) {
+                if (dfa.isAccepting(q)) {
+                    total = total.add(row[q]);
+                }
+            }
+            return total;
+        }
+
+        BigInteger[] counts = initialCounts(dfa);
+        for (int k = 0; k < n; k++) {
+            counts = step(dfa, counts);
+        }
+        return counts[start];
+    }
+
+    /**
+     * Counts the accepted strings of a given length, modulo m.
+     *
+     * @param dfa the compiled DFA
+     * @param n the length
+     * @param m the modulus, at least 1
+     * @return the number of accepted strings of length n, modulo m
+     */
+    static long count(CompiledDFA dfa, int n, long m) {
+        if (n < 0) throw new IllegalArgumentException("negative length " + n);
+        if (m < 1) throw new IllegalArgumentException("modulus must be positive");
+        int start = dfa.startState();
+        if (n == 0 || start == CompiledDFA.DEAD) return 0;
+
+        int size = dfa.stateCount();
+        if (useMatrix(dfa, n)) {
+            long[] row = new long[size];
+            row[start] = 1 % m;
+            long[][] power = new long[size][size];
+            for (int q = 0; q < size; q++) {
+                for (int sym = 0; sym < dfa.symbolCount(); sym++) {
+                    int t = dfa.next(q, sym);
+                    if (t != CompiledDFA.DEAD) {
+                        power[q][t] = addMod(power[q][t], 1 % m, m);
+                    }
+                }
+            }
+
+            for (int e = n; e > 0; e >>>= 1) {
+                if ((e & 1) != 0) {
+                    row = multiply(row, power, m);
+                }
+                if (e > 1) {
+                    power = multiply(power, power, m);
+                }
+            }
+
+            long total = 0;
+            for (int q = 0; q < size; q++) {
+                if (dfa.isAccepting(q)) {
+                    total = addMod(total, row[q], m);
+                }
+            }
+            return total;
+        }
+
+        long[] counts = new long[size];
+        for (int q = 0; q < size; q++) {
+            counts[q] = dfa.isAccepting(q) ? 1 % m : 0;
+        }
+        for (int k = 0; k < n; k++) {
+            long[] previous = counts;
+            long[] next = new long[size];
+            states(size).forEach(q -> {
+                long sum = 0;
+                for (int sym = 0; sym < dfa.symbolCount(); sym++) {
+                    int t = dfa.next(q, sym);
+                    if (t != CompiledDFA.DEAD) {
+                        sum = addMod(sum, previous[t], m);
+                    }
+                }
+                next[q] = sum;
+            });
+            counts = next;
+        }
+        return counts[start];
+    }
+
+    /**
+     * Finds a shortest accepted string by breadth first search from
+     * the start state. Among strings of the same length, the one
+     * that comes first in the order the symbols were added is returned.
+     *
+     * @param dfa the compiled DFA
+     * @return the string, or null if the DFA accepts nothing
+     */
+    static String shortest(CompiledDFA dfa) {
+        int start = dfa.startState();
+        if (start == CompiledDFA.DEAD) return null;
+
+        int size = dfa.stateCount();
+        int[] parent = new int[size];  //State we came from, -1 for the start state's successors
+        char[] via = new char[size];   //Symbol we came by
+        boolean[] seen = new boolean[size];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+
+        //The start state is not marked seen, since the empty string does not count
+        for (int sym = 0; sym < dfa.symbolCount(); sym++) {
+            int t = dfa.next(start, sym);
+            if (t != CompiledDFA.DEAD && !seen[t]) {
+                seen[t] = true;
+                parent[t] = -1;
+                via[t] = dfa.symbol(sym);
+                queue.add(t);
+            }
+        }
+
+        while (!queue.isEmpty()) {
+            int q = queue.poll();
+            if (dfa.isAccepting(q)) {
+                StringBuilder builder = new StringBuilder();
+                for (int p = q; p != -1; p = parent[p]) {
+                    builder.append(via[p]);
+                }
+                return builder.reverse().toString();
+            }
+
+            for (int sym = 0; sym < dfa.symbolCount(); sym++) {
+                int t = dfa.next(q, sym);
+                if (t != CompiledDFA.DEAD && !seen[t]) {
+                    seen[t] = true;
+                    parent[t] = q;
+                    via[t] = dfa.symbol(sym);
+                    queue.add(t);
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @return for each state, 1 if it is final and 0 otherwise
+     */
+    static BigInteger[] initialCounts(CompiledDFA dfa) {
+        BigInteger[] counts = new BigInteger[dfa.stateCount()];
+        for (int q = 0; q < counts.length; q++) {
+            counts[q] = dfa.isAccepting(q) ? BigInteger.ONE : BigInteger.ZERO;
+        }
+        return counts;
+    }
+
+    /**
+     * Turns the counts for length k into the counts for length k + 1.
+     */
+    static BigInteger[] step(CompiledDFA dfa, BigInteger[] counts) {
+        BigInteger[] next = new BigInteger[counts.length];
+        states(counts.length).forEach(q -> {
+            BigInteger sum = BigInteger.ZERO;
+            for (int sym = 0; sym < dfa.symbolCount(); sym++) {
+                int t = dfa.next(q, sym);
+                if (t != CompiledDFA.DEAD) {
+                    sum = sum.add(counts[t]);
+                }
+            }
+            next[q] = sum;
+        });
+        return next;
+    }
+
+    /**
+     * @return a stream over the state ids, parallel for large DFAs
+     */
+    private static IntStream states(int size) {
+        IntStream states = IntStream.range(0, size);
+        return size >= PARALLEL_STATES ? states.parallel() : states;
+    }
+
+    /**
+     * Matrix powers take about log(n) * S^3 steps against n * S * symbols
+     * for the plain recurrence, so they only pay off for small S.
+     */
+    private static boolean useMatrix(CompiledDFA dfa, int n) {
+        long size = dfa.stateCount();
+        int log = 32 - Integer.numberOfLeadingZeros(n);
+        return size <= MATRIX_STATES && size * size * log < (long) n * Math.max(1, dfa.symbolCount());
+    }
+
+    /**
+     * @return M where M[q][t] is the number of symbols leading from q to t
+     */
+    private static BigInteger[][] matrix(CompiledDFA dfa) {
+        int size = dfa.stateCount();
+        long[][] counts = new long[size][size];
+        for (int q = 0; q < size; q++) {
+            for (int sym = 0; sym < dfa.symbolCount(); sym++) {
+                int t = dfa.next(q, sym);
+                if (t != CompiledDFA.DEAD) {
+                    counts[q][t]++;
+                }
+            }
+        }
+
+        BigInteger[][] result = new BigInteger[size][size];
+        for (int q = 0; q < size; q++) {
+            for (int t = 0; t < size; t++) {
+                result[q][t] = BigInteger.valueOf(counts[q][t]);
+            }
+        }
+        return result;
+    }
+
+    private static BigInteger[] multiply(BigInteger[] row, BigInteger[][] matrix) {
+        int size = row.length;
+        BigInteger[] result = new BigInteger[size];
+        Arrays.fill(result, BigInteger.ZERO);
+        for (int q = 0; q < size; q++) {
+            if (row[q].signum() == 0) continue;
+            for (int t = 0; t < size; t++) {
+                if (matrix[q][t].signum() != 0) {
+                    result[t] = result[t].add(row[q].multiply(matrix[q][t]));
+                }
+            }
+        }
+        return result;
+    }
+
+    private static BigInteger[][] multiply(BigInteger[][] a, BigInteger[][] b) {
+        BigInteger[][] result = new BigInteger[a.length][];
+        for (int q = 0; q < a.length; q++) {
+            result[q] = multiply(a[q], b);
+        }
+        return result;
+    }
+
+    private static long[] multiply(long[] row, long[][] matrix, long m) {
+        int size = row.length;
+        long[] result = new long[size];
+        for (int q = 0; q < size; q++) {
+            if (row[q] == 0) continue;
+            for (int t = 0; t < size; t++) {
+                if (matrix[q][t] != 0) {
+                    result[t] = addMod(result[t], multiplyMod(row[q], matrix[q][t], m), m);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static long[][] multiply(long[][] a, long[][] b, long m) {
+        long[][] result = new long[a.length][];
+        for (int q = 0; q < a.length; q++) {
+            result[q] = multiply(a[q], b, m);
+        }
+        return result;
+    }
+
+    /**
+     * @return a + b mod m for a, b in [0, m), without overflow
+     */
+    private static long addMod(long a, long b, long m) {
+        long sum = a + b;
+        return sum < 0 || sum >= m ? sum - m : sum;
+    }
+
+    /**
+     * @return a * b mod m for a, b in [0, m), without overflow
+     */
+    private static long multiplyMod(long a, long b, long m) {
+        if (Math.multiplyHigh(a, b) == 0 && a * b >= 0) {
+            return (a * b) % m;
+        }
+        return BigInteger.valueOf(a).multiply(BigInteger.valueOf(b)).mod(BigInteger.valueOf(m)).longValue();
+    }
+}
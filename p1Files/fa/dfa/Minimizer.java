@@ -0,0 +1,350 @@
+/**
+ * Minimizes compiled DFAs and puts them in canonical form.
+ * Minimizing first drops the states the start state cannot reach
+ * and the states that cannot reach a final state, then merges
+ * equivalent states with Hopcroft's partition refinement. Missing
+ * transitions are treated as going to an implicit sink state, which
+ * is dropped again at the end, so the result is a partial DFA just
+ * like the input.
+ *
+ * @author Josh Miller and Jack Garcia
+ */
+
+
+package fa.dfa;
+
+import java.util.Arrays;
+
+final class Minimizer {
+
+    private Minimizer() {
+    }
+
+    /**
+     * Builds the smallest DFA that accepts the same strings. Each
+     * state keeps the label of one of the states it replaces.
+     *
+     * @param dfa the compiled DFA
+     * @return the minimal DFA, numbered breadth first
+     */
+    static CompiledDFA minimize(CompiledDFA dfa) {
+        int n = dfa.stateCount();
+        int k = dfa.symbolCount();
+        char[] symbols = new char[k];
+        for (int sym = 0; sym < k; sym++) {
+            symbols[sym] = dfa.symbol(sym);
+        }
+
+        int start = dfa.startState();
+        boolean[] live = dfa.liveStates();
+        if (start == CompiledDFA.DEAD || !live[start]) {
+            return new CompiledDFA(new String[0], symbols, new int[0], new boolean[0], CompiledDFA.DEAD);
+        }
+
+        //Keep the live states the start state can reach, in their current order
+        int[] id = new int[n];
+        Arrays.fill(id, CompiledDFA.DEAD);
+        int[] queue = new int[n];
+        int count = 0;
+        id[start] = 0;
+        queue[count++] = start;
+        for (int head = 0; head < count; head++) {
+            int q = queue[head];
+            for (int sym = 0; sym < k; sym++) {
+                int t = dfa.next(q, sym);
+                if (t != CompiledDFA.DEAD && live[t] && id[t] == CompiledDFA.DEAD) {
+                    id[t] = 0;
+                    queue[count++] = t;
+                }
+            }
+        }
+        int[] kept = new int[count];
+        int m = 0;
+        for (int q = 0; q < n; q++) {
+            if (id[q] != CompiledDFA.DEAD) {
+                id[q] = m;
+                kept[m++] = q;
+            }
+        }
+
+        //Complete table over the kept states plus a sink, which is state m
+        int size = m + 1;
+        int[] delta = new int[size * k];
+        boolean[] accepting = new boolean[size];
+        for (int p = 0; p < m; p++) {
+            accepting[p] = dfa.isAccepting(kept[p]);
+            for (int sym = 0; sym < k; sym++) {
+                int t = dfa.next(kept[p], sym);
+                delta[p * k + sym] = t == CompiledDFA.DEAD || id[t] == CompiledDFA.DEAD ? m : id[t];
+            }
+        }
+        Arrays.fill(delta, m * k, size * k, m);
+
+        int[] blockOf = new int[size];
+        int blocks = partition(delta, accepting, k, blockOf);
+
+        //Number the blocks in the order their first state appears, leaving out the sink's block
+        int sinkBlock = blockOf[m];
+        int[] newId = new int[blocks];
+        Arrays.fill(newId, CompiledDFA.DEAD);
+        int[] representative = new int[blocks];
+        int result = 0;
+        for (int p = 0; p < m; p++) {
+            int b = blockOf[p];
+            if (b != sinkBlock && newId[b] == CompiledDFA.DEAD) {
+                newId[b] = result;
+                representative[result++] = p;
+            }
+        }
+
+        String[] names = new String[result];
+        boolean[] newAccepting = new boolean[result];
+        int[] newDelta = new int[result * k];
+        for (int r = 0; r < result; r++) {
+            int p = representative[r];
+            names[r] = dfa.name(kept[p]);
+            newAccepting[r] = accepting[p];
+            for (int sym = 0; sym < k; sym++) {
+                newDelta[r * k + sym] = newId[blockOf[delta[p * k + sym]]];
+            }
+        }
+
+        return new CompiledDFA(names, symbols, newDelta, newAccepting, newId[blockOf[id[start]]]).withBreadthFirstLayout();
+    }
+
+    /**
+     * Builds the canonical form: the minimal DFA over the symbols it
+     * actually uses, sorted by character, with states numbered
+     * breadth first from the start state trying symbols in that order
+     * and named q0, q1, ... in that order. Since the empty string is
+     * never accepted, the start state is made non-final first, so two
+     * DFAs accept the same strings exactly when their canonical forms
+     * are identical.
+     *
+     * @param dfa the compiled DFA
+     * @return the canonical form
+     */
+    static CompiledDFA canonical(CompiledDFA dfa) {
+        CompiledDFA min = minimize(withNonFinalStart(dfa));
+        int n = min.stateCount();
+        int k = min.symbolCount();
+
+        //Symbols without any transition left make no difference to the language
+        char[] used = new char[k];
+        int[] oldSym = new int[k];
+        int u = 0;
+        Integer[] bySymbol = new Integer[k];
+        for (int sym = 0; sym < k; sym++) {
+            bySymbol[sym] = sym;
+        }
+        Arrays.sort(bySymbol, (a, b) -> Character.compare(min.symbol(a), min.symbol(b)));
+        for (int sym : bySymbol) {
+            for (int q = 0; q < n; q++) {
+                if (min.next(q, sym) != CompiledDFA.DEAD) {
+                    used[u] = min.symbol(sym);
+                    oldSym[u++] = sym;
+                    break;
+                }
+            }
+        }
+        char[] symbols = Arrays.copyOf(used, u);
+
+        int start = min.startState();
+        if (start == CompiledDFA.DEAD) {
+            return new CompiledDFA(new String[0], symbols, new int[0], new boolean[0], CompiledDFA.DEAD);
+        }
+
+        //Every state of a minimal DFA is reachable, so the search numbers them all
+        int[] order = new int[n];
+        int[] newId = new int[n];
+        Arrays.fill(newId, CompiledDFA.DEAD);
+        int count = 0;
+        newId[start] = 0;
+        order[count++] = start;
+        for (int head = 0; head < count; head++) {
+            int q = order[head];
+            for (int s = 0; s < u; s++) {
+                int t = min.next(q, oldSym[s]);
+                if (t != CompiledDFA.DEAD && newId[t] == CompiledDFA.DEAD) {
+                    newId[t] = count;
+                    order[count++] = t;
+                }
+            }
+        }
+
+        String[] names = new String[n];
+        boolean[] accepting = new boolean[n];
+        int[] delta = new int[n * u];
+        for (int i = 0; i < n; i++) {
+            int q = order[i];
+            names[i] = "q" + i;
+            accepting[i] = min.isAccepting(q);
+            for (int s = 0; s < u; s++) {
+                int t = min.next(q, oldSym[s]);
+                delta[i * u + s] = t == CompiledDFA.DEAD ? CompiledDFA.DEAD : newId[t];
+            }
+        }
+        return new CompiledDFA(names, symbols, delta, accepting, 0);
+    }
+
+    /**
+     * Makes the start state non-final without changing which non-empty
+     * strings are accepted: if it is final, a non-final copy of its
+     * row is added and becomes the start state.
+     *
+     * @param dfa the compiled DFA
+     * @return dfa itself, or the copy with the new start state
+     */
+    private static CompiledDFA withNonFinalStart(CompiledDFA dfa) {
+        int start = dfa.startState();
+        if (start == CompiledDFA.DEAD || !dfa.isAccepting(start)) return dfa;
+
+        int n = dfa.stateCount();
+        int k = dfa.symbolCount();
+        String[] names = new String[n + 1];
+        char[] symbols = new char[k];
+        boolean[] accepting = new boolean[n + 1];
+        int[] delta = new int[(n + 1) * k];
+        for (int sym = 0; sym < k; sym++) {
+            symbols[sym] = dfa.symbol(sym);
+        }
+        for (int q = 0; q < n; q++) {
+            names[q] = dfa.name(q);
+            accepting[q] = dfa.isAccepting(q);
+            for (int sym = 0; sym < k; sym++) {
+                delta[q * k + sym] = dfa.next(q, sym);
+            }
+        }
+        names[n] = dfa.name(start);
+        for (int sym = 0; sym < k; sym++) {
+            delta[n * k + sym] = dfa.next(start, sym);
+        }
+        return new CompiledDFA(names, symbols, delta, accepting, n);
+    }
+
+    /**
+     * Splits the states of a complete DFA into blocks of equivalent
+     * states, using Hopcroft's algorithm. Each block is kept as a
+     * contiguous run of the elements array; the states of a block
+     * that have a transition into the current splitter are moved to
+     * the front of their run, and a block that is only partly marked
+     * is split in two. Only the smaller half goes back on the work
+     * list, which bounds the work by n * k * log(n).
+     *
+     * @param delta the complete transition table
+     * @param accepting the final states
+     * @param k the number of symbols
+     * @param blockOf receives the block of each state
+     * @return the number of blocks
+     */
+    private static int partition(int[] delta, boolean[] accepting, int k, int[] blockOf) {
+        int n = accepting.length;
+
+        //Predecessors of each (state, symbol) pair, grouped by target
+        int[] first = new int[n * k + 1];
+        for (int q = 0; q < n; q++) {
+            for (int sym = 0; sym < k; sym++) {
+                first[delta[q * k + sym] * k + sym + 1]++;
+            }
+        }
+        for (int i = 0; i < n * k; i++) {
+            first[i + 1] += first[i];
+        }
+        int[] sources = new int[n * k];
+        int[] fill = Arrays.copyOf(first, n * k);
+        for (int q = 0; q < n; q++) {
+            for (int sym = 0; sym < k; sym++) {
+                sources[fill[delta[q * k + sym] * k + sym]++] = q;
+            }
+        }
+
+        int[] elements = new int[n];   //States, grouped by block
+        int[] location = new int[n];   //Index of each state in elements
+        int[] begin = new int[n];  //First index of each block
+        int[] end = new int[n];    //One past the last index of each block
+        int[] marked = new int[n]; //Number of marked states at the front of each block
+        int blocks = 0;
+
+        int count = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            boolean wanted = pass == 0;
+            int from = count;
+            for (int q = 0; q < n; q++) {
+                if (accepting[q] == wanted) {
+                    location[q] = count;
+                    elements[count++] = q;
+                    blockOf[q] = blocks;
+                }
+            }
+            if (count > from) {
+                begin[blocks] = from;
+                end[blocks] = count;
+                blocks++;
+            }
+        }
+
+        int[] work = new int[n];   //Blocks still to split by
+        int pending = 0;
+        work[pending++] = blocks == 2 && end[1] - begin[1] < end[0] - begin[0] ? 1 : 0;
+
+        int[] splitter = new int[n];
+        int[] touched = new int[n];
+        while (pending > 0) {
+            int b = work[--pending];
+            //Copy the splitter, since it may itself be split below
+            int size = end[b] - begin[b];
+            System.arraycopy(elements, begin[b], splitter, 0, size);
+
+            for (int sym = 0; sym < k; sym++) {
+                int touchedCount = 0;
+                for (int j = 0; j < size; j++) {
+                    int t = splitter[j] * k + sym;
+                    for (int i = first[t]; i < first[t + 1]; i++) {
+                        int q = sources[i];
+                        int c = blockOf[q];
+                        int front = begin[c] + marked[c];
+                        if (location[q] < front) continue;
+
+                        if (marked[c] == 0) {
+                            touched[touchedCount++] = c;
+                        }
+                        int other = elements[front];
+                        elements[location[q]] = other;
+                        location[other] = location[q];
+                        elements[front] = q;
+                        location[q] = front;
+                        marked[c]++;
+                    }
+                }
+
+                for (int j = 0; j < touchedCount; j++) {
+                    int c = touched[j];
+                    int mark = marked[c];
+                    marked[c] = 0;
+                    int total = end[c] - begin[c];
+                    if (mark == total) continue;
+
+                    //The new block takes the smaller part
+                    int nb = blocks++;
+                    if (mark <= total - mark) {
+                        begin[nb] = begin[c];
+                        end[nb] = begin[c] + mark;
+                        begin[c] = end[nb];
+                    } else {
+                        begin[nb] = begin[c] + mark;
+                        end[nb] = end[c];
+                        end[c] = begin[nb];
+                    }
+                    for (int i = begin[nb]; i < end[nb]; i++) {
+                        blockOf[elements[i]] = nb;
+                    }
+
+                    //Whether or not c is still on the work list, adding the smaller part is enough
+                    work[pending++] = nb;
+                }
+            }
+        }
+
+        return blocks;
+    }
+}
@@ -0,0 +1,244 @@
+/**
+ * Represents a compiled DFA whose transition table and final states
+ * live outside the Java heap, either in direct memory or in a file
+ * mapped into memory. Only the alphabet lookup is kept on the heap,
+ * so heap usage does not grow with the number of states and the
+ * garbage collector never has to scan the table.
+ *
+ * The layout is a small header (magic, state count, symbol count,
+ * start state), the alphabet as chars, the transition table as ints
+ * in the same order as CompiledDFA, and the final states as a bitset.
+ * State labels are not stored.
+ *
+ * @author Josh Miller and Jack Garcia
+ */
+
+
+package fa.dfa;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+public final class OffHeapDFA {
+
+    private static final int MAGIC = 0x44464131;   //"DFA1"
+    private static final int HEADER = 16;  //magic, states, symbols, start
+
+    private final ByteBuffer data;     //The whole table, direct or mapped
+    private final IntBuffer delta;     //View of the transition table
+    private final int acceptingOffset;     //Byte offset of the final state bitset
+    private final int stateCount;
+    private final int symbolCount;
+    private final int start;
+    private final int[] symbolIndex;   //Maps a character to its symbol id or DEAD
+
+    /**
+     * Reads the header of a table and sets up the views on it.
+     *
+     * @param data the table, positioned at 0
+     */
+    private OffHeapDFA(ByteBuffer data) {
+        this.data = data.order(ByteOrder.LITTLE_ENDIAN);
+        if (data.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("not a DFA table");
+        }
+
+        stateCount = data.getInt(4);
+        symbolCount = data.getInt(8);
+        start = data.getInt(12);
+
+        int maxChar = -1;
+        for (int sym = 0; sym < symbolCount; sym++) {
+            maxChar = Math.max(maxChar, data.getChar(HEADER + sym * 2));
+        }
+        symbolIndex = new int[maxChar + 1];
+        Arrays.fill(symbolIndex, CompiledDFA.DEAD);
+        for (int sym = 0; sym < symbolCount; sym++) {
+            symbolIndex[data.getChar(HEADER + sym * 2)] = sym;
+        }
+
+        int deltaOffset = deltaOffset(symbolCount);
+        delta = data.duplicate().order(ByteOrder.LITTLE_ENDIAN)
+                .position(deltaOffset).limit(deltaOffset + stateCount * symbolCount * 4)
+                .slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+        acceptingOffset = deltaOffset + stateCount * symbolCount * 4;
+    }
+
+    /**
+     * Copies a compiled DFA into direct memory.
+     *
+     * @param table the compiled DFA
+     * @return the off-heap copy
+     */
+    public static OffHeapDFA of(CompiledDFA table) {
+        ByteBuffer data = ByteBuffer.allocateDirect(size(table)).order(ByteOrder.LITTLE_ENDIAN);
+        fill(data, table);
+        return new OffHeapDFA(data);
+    }
+
+    /**
+     * Writes a compiled DFA to a file in the off-heap layout,
+     * to be mapped later with map(Path).
+     *
+     * @param table the compiled DFA
+     * @param file the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(CompiledDFA table, Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer data = channel.map(FileChannel.MapMode.READ_WRITE, 0, size(table));
+            fill(data.order(ByteOrder.LITTLE_ENDIAN), table);
+        }
+    }
+
+    /**
+     * Maps a file written by write(CompiledDFA, Path). The table is
+     * read straight from the page cache and is never copied onto the heap.
+     * The header is checked against the file size first; the
+     * transitions themselves are trusted.
+     *
+     * @param file the file to map
+     * @return the mapped DFA
+     * @throws IOException if the file cannot be read, or is truncated
+     *         or not a DFA table
+     */
+    public static OffHeapDFA map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            check(data.order(ByteOrder.LITTLE_ENDIAN), file);
+            return new OffHeapDFA(data);
+        }
+    }
+
+    /**
+     * Checks that a mapped table has the magic number, sane counts and
+     * start state, and is long enough for the counts in its header.
+     */
+    private static void check(ByteBuffer data, Path file) throws IOException {
+        if (data.capacity() < HEADER || data.getInt(0) != MAGIC) {
+            throw new IOException(file + " is not a DFA table");
+        }
+
+        int n = data.getInt(4);
+        int k = data.getInt(8);
+        int start = data.getInt(12);
+        if (n < 0 || k < 0) {
+            throw new IOException(file + " has a negative state or symbol count");
+        }
+        long size = ((HEADER + 2L * k + 3) & ~3L) + (long) n * k * 4 + (n + 7L) / 8;
+        if (size > data.capacity()) {
+            throw new IOException(file + " is truncated: " + data.capacity() + " of " + size + " bytes");
+        }
+        if (start != CompiledDFA.DEAD && (start < 0 || start >= n)) {
+            throw new IOException(file + " has start state " + start + " of " + n);
+        }
+    }
+
+    /**
+     * Checks if the DFA accepts the input string.
+     * Like DFA.accepts, the empty string is never accepted.
+     *
+     * @param s the input string
+     * @return true if s is accepted
+     */
+    public boolean accepts(CharSequence s) {
+        if (s.length() == 0 || start == CompiledDFA.DEAD) return false;
+
+        DFAAcceptEvent event = DFAEvents.beginAccept();
+
+        int state = start;
+        int i = 0;
+        while (i < s.length() && state != CompiledDFA.DEAD) {
+            char c = s.charAt(i++);
+            int sym = c < symbolIndex.length ? symbolIndex[c] : CompiledDFA.DEAD;
+            state = sym == CompiledDFA.DEAD ? CompiledDFA.DEAD : delta.get(state * symbolCount + sym);
+        }
+
+        boolean result = state != CompiledDFA.DEAD && isAccepting(state);
+        DFAEvents.endAccept(event, "offHeap", s.length(), i, result);
+        return result;
+    }
+
+    /**
+     * @return the number of states
+     */
+    public int stateCount() {
+        return stateCount;
+    }
+
+    /**
+     * @return the number of symbols in the alphabet
+     */
+    public int symbolCount() {
+        return symbolCount;
+    }
+
+    /**
+     * @param state a state id
+     * @return true if the state is final
+     */
+    boolean isAccepting(int state) {
+        return (data.get(acceptingOffset + (state >>> 3)) & (1 << (state & 7))) != 0;
+    }
+
+    /**
+     * Computes the number of bytes a compiled DFA takes in this layout.
+     */
+    private static int size(CompiledDFA table) {
+        long size = deltaOffset(table.symbolCount())
+                + (long) table.stateCount() * table.symbolCount() * 4
+                + (table.stateCount() + 7) / 8;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("DFA too large for a single table: " + size + " bytes");
+        }
+        return (int) size;
+    }
+
+    /**
+     * @return the byte offset of the transition table, aligned to 4 bytes
+     */
+    private static int deltaOffset(int symbolCount) {
+        return (HEADER + symbolCount * 2 + 3) & ~3;
+    }
+
+    /**
+     * Writes a compiled DFA into a buffer in this layout.
+     */
+    private static void fill(ByteBuffer data, CompiledDFA table) {
+        int n = table.stateCount();
+        int k = table.symbolCount();
+
+        data.putInt(0, MAGIC);
+        data.putInt(4, n);
+        data.putInt(8, k);
+        data.putInt(12, table.startState());
+        for (int sym = 0; sym < k; sym++) {
+            data.putChar(HEADER + sym * 2, table.symbol(sym));
+        }
+
+        int offset = deltaOffset(k);
+        for (int state = 0; state < n; state++) {
+            for (int sym = 0; sym < k; sym++) {
+                data.putInt(offset, table.next(state, sym));
+                offset += 4;
+            }
+        }
+
+        for (int state = 0; state < n; state += 8) {
+            int bits = 0;
+            for (int i = 0; i < 8 && state + i < n; i++) {
+                if (table.isAccepting(state + i)) {
+                    bits |= 1 << i;
+                }
+            }
+            data.put(offset++, (byte) bits);
+        }
+    }
+}
@@ -0,0 +1,341 @@
+/**
+ * An immutable DFA whose versions share structure. Every with...
+ * method returns a new version and leaves the old one as it was.
+ * States, and the transitions out of each state, are kept in hash
+ * array mapped tries (HashTrie), so a new version only copies the
+ * few trie nodes on the path to what changed and shares the other
+ * states and rows with the old version. Keeping many versions of a
+ * large DFA costs memory in proportion to the edits, not to the
+ * number of versions times the size. The compiled table used for
+ * matching is only softly held, see compile.
+ *
+ * The with... methods follow the DFA methods of the same meaning:
+ * where the DFA method would return false, the with... method
+ * returns the same version unchanged.
+ *
+ * @author Josh Miller and Jack Garcia
+ */
+
+
+package fa.dfa;
+
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public final class PersistentDFA {
+
+    private static final PersistentDFA EMPTY = new PersistentDFA(HashTrie.empty(), HashTrie.empty(), null, 0);
+
+    private final HashTrie<String, Row> states;    //State label to its row
+    private final HashTrie<Character, Integer> sigma;  //Symbol to the order it was added in
+    private final String start;    //Label of the start state, or null
+    private final int finalCount;  //Number of setFinal calls so far, to keep final states in order
+    private volatile SoftReference<CompiledDFA> compiled;  //Table form, built on first use, null before that
+
+    private PersistentDFA(HashTrie<String, Row> states, HashTrie<Character, Integer> sigma, String start, int finalCount) {
+        this.states = states;
+        this.sigma = sigma;
+        this.start = start;
+        this.finalCount = finalCount;
+    }
+
+    /**
+     * @return the DFA with no states and no symbols
+     */
+    public static PersistentDFA empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Copies a DFA into a first version, keeping the order of
+     * its states, symbols and final states.
+     *
+     * @param dfa the DFA
+     * @return the first version
+     */
+    public static PersistentDFA of(DFA dfa) {
+        PersistentDFA result = EMPTY;
+        for (char symbol : dfa.getSigma()) {
+            result = result.withSigma(symbol);
+        }
+        for (DFAState state : dfa.states()) {
+            result = result.withState(state.getName());
+        }
+        for (DFAState state : dfa.finals()) {
+            result = result.withFinal(state.getName());
+        }
+        for (DFAState state : dfa.states()) {
+            for (char symbol : dfa.getSigma()) {
+                DFAState to = state.getTransistion(symbol);
+                if (to != null) {
+                    result = result.withTransition(state.getName(), to.getName(), symbol);
+                }
+            }
+        }
+        DFAState initial = dfa.startState();
+        return initial != null ? result.withStart(initial.getName()) : result;
+    }
+
+    /**
+     * Adds a symbol to the alphabet.
+     *
+     * @param symbol the symbol
+     * @return the new version, or this one if the symbol was already there
+     */
+    public PersistentDFA withSigma(char symbol) {
+        if (sigma.containsKey(symbol)) return this;
+        return new PersistentDFA(states, sigma.put(symbol, sigma.size()), start, finalCount);
+    }
+
+    /**
+     * Adds a state with no transitions.
+     *
+     * @param name the label of the state
+     * @return the new version, or this one if the state already exists
+     */
+    public PersistentDFA withState(String name) {
+        if (states.containsKey(name)) return this;
+        Row row = new Row(states.size(), -1, HashTrie.empty());
+        return new PersistentDFA(states.put(name, row), sigma, start, finalCount);
+    }
+
+    /**
+     * Makes a state final.
+     *
+     * @param name the label of the state
+     * @return the new version, or this one if there is no such state or it is already final
+     */
+    public PersistentDFA withFinal(String name) {
+        Row row = states.get(name);
+        if (row == null || row.finalIndex >= 0) return this;
+        Row changed = new Row(row.index, finalCount, row.transitions);
+        return new PersistentDFA(states.put(name, changed), sigma, start, finalCount + 1);
+    }
+
+    /**
+     * Sets the start state.
+     *
+     * @param name the label of the state
+     * @return the new version, or this one if there is no such state or it already is the start state
+     */
+    public PersistentDFA withStart(String name) {
+        if (!states.containsKey(name) || name.equals(start)) return this;
+        return new PersistentDFA(states, sigma, name, finalCount);
+    }
+
+    /**
+     * Adds a transition, replacing any transition from the same
+     * state on the same symbol.
+     *
+     * @param fromState the label of the state where the transition starts
+     * @param toState the label of the state where the transition ends
+     * @param onSymb the symbol of the transition
+     * @return the new version, or this one if a state or the symbol is unknown
+     *         or the transition is already there
+     */
+    public PersistentDFA withTransition(String fromState, String toState, char onSymb) {
+        Row row = states.get(fromState);
+        if (row == null || !states.containsKey(toState) || !sigma.containsKey(onSymb)) return this;
+
+        HashTrie<Character, String> transitions = row.transitions.put(onSymb, toState);
+        if (transitions == row.transitions) return this;
+        Row changed = new Row(row.index, row.finalIndex, transitions);
+        return new PersistentDFA(states.put(fromState, changed), sigma, start, finalCount);
+    }
+
+    /**
+     * @return the number of states
+     */
+    public int stateCount() {
+        return states.size();
+    }
+
+    /**
+     * @return the alphabet, in the order the symbols were added
+     */
+    public Set<Character> getSigma() {
+        Set<Character> result = new LinkedHashSet<>();
+        for (char symbol : symbols()) {
+            result.add(symbol);
+        }
+        return result;
+    }
+
+    /**
+     * @param name the label of a state
+     * @return true if the state exists
+     */
+    public boolean hasState(String name) {
+        return states.containsKey(name);
+    }
+
+    /**
+     * @param name the label of a state
+     * @return true if the state exists and is final
+     */
+    public boolean isFinal(String name) {
+        Row row = states.get(name);
+        return row != null && row.finalIndex >= 0;
+    }
+
+    /**
+     * @param name the label of a state
+     * @return true if the state is the start state
+     */
+    public boolean isStart(String name) {
+        return name.equals(start);
+    }
+
+    /**
+     * @param fromState the label of a state
+     * @param onSymb a symbol
+     * @return the label of the state the transition leads to, or null if there is none
+     */
+    public String getTransition(String fromState, char onSymb) {
+        Row row = states.get(fromState);
+        return row != null ? row.transitions.get(onSymb) : null;
+    }
+
+    /**
+     * checks if this version will accept the input string.
+     * Like DFA.accepts, the empty string is never accepted.
+     *
+     * @param s the input string
+     * @return true if s is accepted
+     */
+    public boolean accepts(String s) {
+        return compile().accepts(s);
+    }
+
+    /**
+     * Hashes the language of this version, for telling apart versions
+     * that accept different strings. See DFA.fingerprint.
+     *
+     * @return the 128-bit fingerprint
+     */
+    public DFAFingerprint fingerprint() {
+        return compile().fingerprint();
+    }
+
+    /**
+     * Returns the table form of this version. The table is built on
+     * first use and kept only through a soft reference: a full table
+     * per version would cost versions times size again, so the garbage
+     * collector may drop the tables of versions that are no longer
+     * matched, at the price of rebuilding one when it is used again.
+     * Callers that match one version often should hold on to the result.
+     *
+     * @return the compiled DFA
+     */
+    public CompiledDFA compile() {
+        SoftReference<CompiledDFA> ref = compiled;
+        CompiledDFA result = ref != null ? ref.get() : null;
+        if (result == null) {
+            DFAOperationEvent event = DFAEvents.beginOperation();
+            List<String> names = names();
+            char[] symbols = symbols();
+            Map<String, Integer> ids = new HashMap<>(DFA.capacityFor(names.size()));
+            for (int q = 0; q < names.size(); q++) {
+                ids.put(names.get(q), q);
+            }
+
+            int k = symbols.length;
+            int[] delta = new int[names.size() * k];
+            boolean[] accepting = new boolean[names.size()];
+            long transitions = 0;
+            for (int q = 0; q < names.size(); q++) {
+                Row row = states.get(names.get(q));
+                accepting[q] = row.finalIndex >= 0;
+                for (int sym = 0; sym < k; sym++) {
+                    String to = row.transitions.get(symbols[sym]);
+                    delta[q * k + sym] = to != null ? ids.get(to) : CompiledDFA.DEAD;
+                }
+                transitions += row.transitions.size();
+            }
+
+            int startId = start != null ? ids.get(start) : CompiledDFA.DEAD;
+            result = new CompiledDFA(names.toArray(new String[0]), symbols, delta, accepting, startId)
+                    .withBreadthFirstLayout();
+            compiled = new SoftReference<>(result);
+            DFAEvents.endOperation(event, "compile", names.size(), transitions);
+        }
+        return result;
+    }
+
+    /**
+     * Copies this version into a mutable DFA, with states, symbols
+     * and final states in the order they were added.
+     *
+     * @return the new DFA
+     */
+    public DFA toDFA() {
+        List<String> names = names();
+        char[] symbols = symbols();
+        DFA result = new DFA(names.size(), symbols.length);
+        for (char symbol : symbols) {
+            result.addSigma(symbol);
+        }
+
+        Map<String, DFAState> loaded = new HashMap<>(DFA.capacityFor(names.size()));
+        for (String name : names) {
+            loaded.put(name, result.loadState(name, symbols.length));
+        }
+        for (String name : names) {
+            DFAState from = loaded.get(name);
+            states.get(name).transitions.forEach((symbol, to) -> from.createNewTransition(symbol, loaded.get(to)));
+        }
+
+        List<String> finals = new ArrayList<>();
+        states.forEach((name, row) -> {
+            if (row.finalIndex >= 0) finals.add(name);
+        });
+        finals.sort(Comparator.comparingInt(name -> states.get(name).finalIndex));
+        for (String name : finals) {
+            result.setFinal(name);
+        }
+        if (start != null) {
+            result.setStart(start);
+        }
+        return result;
+    }
+
+    /**
+     * @return the state labels in the order the states were added
+     */
+    private List<String> names() {
+        String[] names = new String[states.size()];
+        states.forEach((name, row) -> names[row.index] = name);
+        return List.of(names);
+    }
+
+    /**
+     * @return the symbols in the order they were added
+     */
+    private char[] symbols() {
+        char[] symbols = new char[sigma.size()];
+        sigma.forEach((symbol, index) -> symbols[index] = symbol);
+        return symbols;
+    }
+
+    /**
+     * One state: its position, whether it is final, and its transitions.
+     * Rows are never changed; a version that changes a state gets a new row.
+     */
+    private static final class Row {
+        private final int index;   //Order the state was added in
+        private final int finalIndex;  //Order the state was made final in, or -1
+        private final HashTrie<Character, String> transitions;     //Symbol to the label of the next state
+
+        Row(int index, int finalIndex, HashTrie<Character, String> transitions) {
+            this.index = index;
+            this.finalIndex = finalIndex;
+            this.transitions = transitions;
+        }
+    }
+}
@@ -0,0 +1,334 @@
+/**
+ * Remembers which state a DFA reaches after reading input prefixes,
+ * so inputs that share a long prefix do not have to re-run it.
+ * Prefixes are kept in a trie whose nodes hold the state reached,
+ * and the trie is bounded: once it is full, leaves are evicted with
+ * the CLOCK algorithm. Lookups do not lock; only adding and evicting
+ * nodes does.
+ *
+ * A prefix is only added once two lookups in a row have read it past
+ * the deepest cached node, and only if they share a few symbols
+ * there, so inputs with unique tails do not fill the trie with
+ * prefixes that are never read again. The statistics count input
+ * symbols, not lookups: a hit is a symbol skipped by resuming from a
+ * cached prefix, and a miss is a symbol past the cached prefix.
+ *
+ * @author Josh Miller and Jack Garcia
+ */
+
+
+package fa.dfa;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+public class PrefixCache {
+
+    private static final int MIN_ADMIT = 8;    //Fewest shared symbols worth adding to the trie
+
+    private final int maxEntries;  //Largest number of cached prefixes
+    private final int maxDepth;    //Longest prefix that is cached
+    private final LongAdder hits;  //Symbols skipped by resuming from a cached prefix
+    private final LongAdder misses;    //Symbols past the cached prefix
+
+    private volatile CompiledDFA table;    //The DFA the cached states belong to
+    private volatile Node root;    //The empty prefix
+    private ArrayDeque<Node> clock;    //Cached nodes in CLOCK order, guarded by this
+    private int size;  //Number of cached prefixes, guarded by this
+    private int evicted;   //Prefixes evicted since the last cache event, guarded by this
+
+    /**
+     * Constructor for an empty cache.
+     *
+     * @param maxEntries the largest number of prefixes to keep
+     * @param maxDepth the longest prefix to keep
+     */
+    public PrefixCache(int maxEntries, int maxDepth) {
+        if (maxEntries < 1 || maxDepth < 1) {
+            throw new IllegalArgumentException("cache size and depth must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.maxDepth = maxDepth;
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+        clear();
+    }
+
+    /**
+     * Checks if the DFA accepts the input string, resuming from the
+     * longest cached prefix of s and caching the prefixes it reads.
+     * Like DFA.accepts, the empty string is never accepted.
+     *
+     * @param dfa the compiled DFA
+     * @param s the input string
+     * @return true if s is accepted
+     */
+    boolean accepts(CompiledDFA dfa, CharSequence s) {
+        if (s.length() == 0 || dfa.startState() == CompiledDFA.DEAD) return false;
+        if (table != dfa) {
+            bind(dfa);
+        }
+
+        Node node = root;
+        int i = 0;
+        while (i < s.length()) {
+            Node child = node.children.get(s.charAt(i));
+            if (child == null) break;
+            if (!child.referenced) {
+                child.referenced = true;
+            }
+            node = child;
+            i++;
+        }
+        hits.add(i);
+        misses.add(s.length() - i);
+
+        //Admit the part of the tail the last lookup to stop here also read
+        int depth = Math.min(s.length(), maxDepth);
+        int admit = 0;
+        if (i < depth) {
+            Tail last = node.pending;
+            admit = last == null ? 0 : last.common(s, i, depth);
+            if (admit < MIN_ADMIT && i + admit < depth) {
+                admit = 0;
+            }
+            node.pending = new Tail(s, i);
+        }
+
+        int[] path = admit > 0 ? new int[admit] : null;
+        int state = node.state;
+        for (int j = i; j < s.length(); j++) {
+            state = dfa.step(state, s.charAt(j));
+            if (state == CompiledDFA.DEAD) {
+                if (path != null && j > i) {
+                    insert(dfa, node, s, i, path, Math.min(j - i, admit));
+                }
+                return false;
+            }
+            if (j - i < admit) {
+                path[j - i] = state;
+            }
+        }
+
+        if (path != null) {
+            insert(dfa, node, s, i, path, admit);
+        }
+        return dfa.isAccepting(state);
+    }
+
+    /**
+     * @return the number of input symbols skipped by resuming from a cached prefix
+     */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of input symbols past the cached prefix
+     */
+    public long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the share of input symbols that were skipped, or 0 if there were none
+     */
+    public double hitRate() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    /**
+     * @return the number of cached prefixes
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Removes every cached prefix. The statistics are kept.
+     */
+    public synchronized void clear() {
+        if (size > 0) {
+            DFAEvents.cache("clear", size, 0, hits.sum(), misses.sum());
+        }
+        root = new Node(null, '\0', table != null ? table.startState() : CompiledDFA.DEAD);
+        clock = new ArrayDeque<>();
+        size = 0;
+    }
+
+    /**
+     * Starts over for a different compiled DFA.
+     */
+    private synchronized void bind(CompiledDFA dfa) {
+        if (table != dfa) {
+            table = dfa;
+            clear();
+        }
+    }
+
+    /**
+     * Adds the prefixes s[0, from + k] for k < count below node,
+     * where path[k] is the state each of them reaches. The deepest
+     * new node remembers the rest of s, so a later lookup can extend
+     * the prefix further.
+     */
+    private synchronized void insert(CompiledDFA dfa, Node node, CharSequence s, int from, int[] path, int count) {
+        if (table != dfa || node.removed || !isAttached(node)) return;
+
+        for (int k = 0; k < count; k++) {
+            char c = s.charAt(from + k);
+            Node child = node.children.get(c);
+            if (child == null) {
+                child = new Node(node, c, path[k]);
+                node.children = node.children.with(c, child);
+                clock.add(child);
+                size++;
+            }
+            node = child;
+        }
+        if (from + count < s.length()) {
+            node.pending = new Tail(s, from + count);
+        }
+
+        evict();
+    }
+
+    /**
+     * Runs the CLOCK hand until the cache is back under its limit.
+     * Only leaves are evicted, so every cached node keeps its parent.
+     */
+    private void evict() {
+        while (size > maxEntries) {
+            Node node = clock.poll();
+            if (node.removed) continue;
+
+            if (node.referenced || node.children.size() > 0) {
+                node.referenced = false;
+                clock.add(node);
+                continue;
+            }
+
+            node.removed = true;
+            node.parent.children = node.parent.children.without(node.key);
+            size--;
+            evicted++;
+        }
+
+        //One event per eighth of the cache evicted, not one per insert
+        if (evicted >= Math.max(1, maxEntries / 8)) {
+            DFAEvents.cache("evict", evicted, size, hits.sum(), misses.sum());
+            evicted = 0;
+        }
+    }
+
+    /**
+     * @return true if the node still belongs to the current trie
+     */
+    private boolean isAttached(Node node) {
+        while (node.parent != null) {
+            node = node.parent;
+        }
+        return node == root;
+    }
+
+    /**
+     * A cached prefix and the state it reaches.
+     */
+    private static final class Node {
+        private final Node parent;
+        private final char key;    //Last character of the prefix
+        private final int state;   //State reached after the prefix
+        private volatile Children children;    //Replaced, never changed, guarded by the cache
+        private volatile Tail pending; //Rest of the last input that stopped here
+        private volatile boolean referenced;   //CLOCK reference bit
+        private volatile boolean removed;
+
+        Node(Node parent, char key, int state) {
+            this.parent = parent;
+            this.key = key;
+            this.state = state;
+            this.children = Children.EMPTY;
+        }
+    }
+
+    /**
+     * The children of a node, sorted by character. Changes make a new
+     * copy, so lookups can read it without locking.
+     */
+    private static final class Children {
+        private static final Children EMPTY = new Children(new char[0], new Node[0]);
+
+        private final char[] keys;
+        private final Node[] nodes;
+
+        private Children(char[] keys, Node[] nodes) {
+            this.keys = keys;
+            this.nodes = nodes;
+        }
+
+        int size() {
+            return keys.length;
+        }
+
+        Node get(char c) {
+            int i = Arrays.binarySearch(keys, c);
+            return i >= 0 ? nodes[i] : null;
+        }
+
+        Children with(char c, Node node) {
+            int i = -Arrays.binarySearch(keys, c) - 1;
+            char[] k = new char[keys.length + 1];
+            Node[] n = new Node[nodes.length + 1];
+            System.arraycopy(keys, 0, k, 0, i);
+            System.arraycopy(nodes, 0, n, 0, i);
+            k[i] = c;
+            n[i] = node;
+            System.arraycopy(keys, i, k, i + 1, keys.length - i);
+            System.arraycopy(nodes, i, n, i + 1, nodes.length - i);
+            return new Children(k, n);
+        }
+
+        Children without(char c) {
+            int i = Arrays.binarySearch(keys, c);
+            if (i < 0) return this;
+            if (keys.length == 1) return EMPTY;
+            char[] k = new char[keys.length - 1];
+            Node[] n = new Node[nodes.length - 1];
+            System.arraycopy(keys, 0, k, 0, i);
+            System.arraycopy(nodes, 0, n, 0, i);
+            System.arraycopy(keys, i + 1, k, i, k.length - i);
+            System.arraycopy(nodes, i + 1, n, i, n.length - i);
+            return new Children(k, n);
+        }
+    }
+
+    /**
+     * The unread rest of an input, from the node a lookup stopped at.
+     * Strings are kept as they are; other sequences are copied, since
+     * they may change.
+     */
+    private static final class Tail {
+        private final CharSequence s;
+        private final int from;
+
+        Tail(CharSequence s, int from) {
+            this.s = s instanceof String ? s : s.toString();
+            this.from = from;
+        }
+
+        /**
+         * @return how many characters this tail shares with t[from, to)
+         */
+        int common(CharSequence t, int from, int to) {
+            int n = Math.min(to - from, s.length() - this.from);
+            int k = 0;
+            while (k < n && s.charAt(this.from + k) == t.charAt(from + k)) {
+                k++;
+            }
+            return k;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/**
+ * Builds the reverse of a compiled DFA: a DFA that accepts a string
+ * exactly when the original accepts the string read backwards. The
+ * reverse is determinized by subset construction, starting from the
+ * set of final states and following transitions backwards; a subset
+ * is final if it holds the original start state. Only states the
+ * start state can reach are used, which makes the result minimal
+ * (Brzozowski), so reversing twice minimizes a DFA.
+ *
+ * A reverse can have exponentially more states than the DFA itself,
+ * for example the DFA for "the n-th symbol is a" has n + 2 states
+ * and its reverse about 2^n.
+ *
+ * @author Josh Miller and Jack Garcia
+ */
+
+
+package fa.dfa;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+final class Reverser {
+
+    private Reverser() {
+    }
+
+    /**
+     * Builds the minimal DFA for the reversed language, with states
+     * numbered breadth first from its start state.
+     *
+     * @param dfa the compiled DFA
+     * @param subsetNames true to name each state after the original
+     *        states it stands for, as in "{a,b}"; false for q0, q1, ...
+     * @param maxStates the most states the reverse may have
+     * @return the reverse
+     * @throws IllegalStateException if the reverse needs more than maxStates states
+     */
+    static CompiledDFA reverse(CompiledDFA dfa, boolean subsetNames, int maxStates) {
+        if (maxStates < 1) {
+            throw new IllegalArgumentException("state limit must be positive");
+        }
+        int n = dfa.stateCount();
+        int k = dfa.symbolCount();
+        char[] symbols = new char[k];
+        for (int sym = 0; sym < k; sym++) {
+            symbols[sym] = dfa.symbol(sym);
+        }
+
+        int start = dfa.startState();
+        boolean[] reachable = new boolean[n];
+        if (start != CompiledDFA.DEAD) {
+            int[] queue = new int[n];
+            int count = 0;
+            reachable[start] = true;
+            queue[count++] = start;
+            for (int head = 0; head < count; head++) {
+                for (int sym = 0; sym < k; sym++) {
+                    int t = dfa.next(queue[head], sym);
+                    if (t != CompiledDFA.DEAD && !reachable[t]) {
+                        reachable[t] = true;
+                        queue[count++] = t;
+                    }
+                }
+            }
+        }
+
+        //Reachable predecessors of each (state, symbol) pair
+        int[] first = new int[n * k + 1];
+        for (int q = 0; q < n; q++) {
+            if (!reachable[q]) continue;
+            for (int sym = 0; sym < k; sym++) {
+                int t = dfa.next(q, sym);
+                if (t != CompiledDFA.DEAD) first[t * k + sym + 1]++;
+            }
+        }
+        for (int i = 0; i < n * k; i++) {
+            first[i + 1] += first[i];
+        }
+        int[] sources = new int[first[n * k]];
+        int[] fill = Arrays.copyOf(first, n * k);
+        for (int q = 0; q < n; q++) {
+            if (!reachable[q]) continue;
+            for (int sym = 0; sym < k; sym++) {
+                int t = dfa.next(q, sym);
+                if (t != CompiledDFA.DEAD) sources[fill[t * k + sym]++] = q;
+            }
+        }
+
+        BitSet initial = new BitSet(n);
+        for (int q = 0; q < n; q++) {
+            if (reachable[q] && dfa.isAccepting(q)) initial.set(q);
+        }
+        if (initial.isEmpty()) {
+            return new CompiledDFA(new String[0], symbols, new int[0], new boolean[0], CompiledDFA.DEAD);
+        }
+
+        Map<BitSet, Integer> ids = new HashMap<>();
+        List<BitSet> subsets = new ArrayList<>();
+        ids.put(initial, 0);
+        subsets.add(initial);
+        int[] delta = new int[Math.max(16, k)];
+        for (int i = 0; i < subsets.size(); i++) {
+            BitSet subset = subsets.get(i);
+            if (delta.length < (i + 1) * k) {
+                delta = Arrays.copyOf(delta, Math.max(delta.length * 2, (i + 1) * k));
+            }
+            for (int sym = 0; sym < k; sym++) {
+                BitSet previous = new BitSet(n);
+                for (int q = subset.nextSetBit(0); q >= 0; q = subset.nextSetBit(q + 1)) {
+                    int t = q * k + sym;
+                    for (int j = first[t]; j < first[t + 1]; j++) {
+                        previous.set(sources[j]);
+                    }
+                }
+                if (previous.isEmpty()) {
+                    delta[i * k + sym] = CompiledDFA.DEAD;
+                    continue;
+                }
+
+                Integer id = ids.get(previous);
+                if (id == null) {
+                    if (subsets.size() == maxStates) {
+                        throw new IllegalStateException("reverse needs more than " + maxStates + " states");
+                    }
+                    id = subsets.size();
+                    ids.put(previous, id);
+                    subsets.add(previous);
+                }
+                delta[i * k + sym] = id;
+            }
+        }
+
+        int size = subsets.size();
+        String[] names = new String[size];
+        boolean[] accepting = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            BitSet subset = subsets.get(i);
+            accepting[i] = subset.get(start);
+            names[i] = subsetNames ? name(dfa, subset) : "q" + i;
+        }
+        return new CompiledDFA(names, symbols, Arrays.copyOf(delta, size * k), accepting, 0);
+    }
+
+    /**
+     * @return the labels of the states in the subset, as in "{a,b}"
+     */
+    private static String name(CompiledDFA dfa, BitSet subset) {
+        StringBuilder builder = new StringBuilder("{");
+        for (int q = subset.nextSetBit(0); q >= 0; q = subset.nextSetBit(q + 1)) {
+            if (builder.length() > 1) {
+                builder.append(',');
+            }
+            builder.append(dfa.name(q));
+        }
+        return builder.append('}').toString();
+    }
+}
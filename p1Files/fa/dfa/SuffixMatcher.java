@@ -0,0 +1,91 @@
+/**
+ * Checks inputs by reading them from the end, using the reverse of
+ * a DFA. The scan stops as soon as the answer is known: it rejects
+ * once no final state can be reached any more, and it accepts once
+ * it reaches a state from which every string is accepted. For rules
+ * that only look at a short suffix, such as file extensions, a check
+ * reads a few characters no matter how long the input is.
+ *
+ * Accepting early assumes the unread part of the input only uses
+ * symbols of the alphabet. DFA.accepts rejects any input with a
+ * character outside the alphabet, so for such inputs the two can
+ * disagree. Like DFA.accepts, the empty string is never accepted.
+ *
+ * The matcher works on the DFA as it was when the matcher was created.
+ *
+ * @author Josh Miller and Jack Garcia
+ */
+
+
+package fa.dfa;
+
+public class SuffixMatcher {
+
+    private final CompiledDFA reverse;     //The reversed DFA
+    private final int universal;   //State from which every string is accepted, or DEAD
+
+    /**
+     * Creates a matcher for a DFA.
+     *
+     * @param dfa the compiled DFA
+     * @param maxStates the most states the reversed DFA may have
+     * @throws IllegalStateException if the reverse needs more than maxStates states
+     */
+    SuffixMatcher(CompiledDFA dfa, int maxStates) {
+        this.reverse = Reverser.reverse(dfa, false, maxStates);
+        this.universal = universalState(reverse);
+    }
+
+    /**
+     * Checks if the DFA accepts the input string, reading it from the end.
+     *
+     * @param s the input string, over the alphabet of the DFA
+     * @return true if s is accepted
+     */
+    public boolean accepts(CharSequence s) {
+        int state = reverse.startState();
+        if (s.length() == 0 || state == CompiledDFA.DEAD) return false;
+        DFAAcceptEvent event = DFAEvents.beginAccept();
+
+        //The reverse is minimal, so every state can still accept and DEAD is the only dead end
+        int i = s.length();
+        while (i > 0 && state != CompiledDFA.DEAD && state != universal) {
+            state = reverse.step(state, s.charAt(--i));
+        }
+
+        boolean result = state != CompiledDFA.DEAD && (state == universal || i == 0 && reverse.isAccepting(state));
+        DFAEvents.endAccept(event, "suffix", s.length(), s.length() - i, result);
+        return result;
+    }
+
+    /**
+     * @return the number of states of the reversed DFA
+     */
+    public int stateCount() {
+        return reverse.stateCount();
+    }
+
+    /**
+     * In a minimal DFA all states that accept every string are
+     * equivalent, so there is at most one: a final state that loops
+     * to itself on every symbol.
+     *
+     * @return the state, or DEAD if there is none
+     */
+    private static int universalState(CompiledDFA dfa) {
+        if (dfa.symbolCount() == 0) return CompiledDFA.DEAD;
+
+        for (int q = 0; q < dfa.stateCount(); q++) {
+            if (!dfa.isAccepting(q)) continue;
+
+            boolean loops = true;
+            for (int sym = 0; sym < dfa.symbolCount() && loops; sym++) {
+                loops = dfa.next(q, sym) == q;
+            }
+            if (loops) {
+                return q;
+            }
+        }
+        return CompiledDFA.DEAD;
+    }
+}
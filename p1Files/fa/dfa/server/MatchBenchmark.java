@@ -0,0 +1,122 @@
+/**
+ * Load generator for MatchServer. Starts a server in this process,
+ * registers a random DFA, runs a number of client threads against
+ * it and prints the throughput and latency percentiles.
+ *
+ * Usage: java fa.dfa.server.MatchBenchmark [clients] [queriesPerClient] [unix|tcp]
+ *
+ * @author Josh Miller and Jack Garcia
+ */
+
+
+package fa.dfa.server;
+
+import fa.dfa.DFA;
+import fa.dfa.DFABuilder;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class MatchBenchmark {
+
+    private static final int STATES = 10000;
+    private static final int SYMBOLS = 26;
+    private static final int INPUT_LENGTH = 64;
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+        boolean unix = args.length <= 2 || args[2].equals("unix");
+
+        SocketAddress address = unix
+                ? UnixDomainSocketAddress.of(Files.createTempDirectory("dfa").resolve("match.sock"))
+                : new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+
+        try (MatchServer server = new MatchServer(address, Runtime.getRuntime().availableProcessors())) {
+            server.register("bench", randomDFA(new Random(42)));
+            server.start();
+            SocketAddress target = server.getAddress();
+
+            ExecutorService pool = Executors.newFixedThreadPool(clients);
+            List<Future<long[]>> results = new ArrayList<>();
+            long begin = System.nanoTime();
+            for (int c = 0; c < clients; c++) {
+                long seed = c;
+                Callable<long[]> client = () -> runClient(target, queries, new Random(seed));
+                results.add(pool.submit(client));
+            }
+
+            long[] latencies = new long[clients * queries];
+            int k = 0;
+            for (Future<long[]> result : results) {
+                for (long latency : result.get()) {
+                    latencies[k++] = latency;
+                }
+            }
+            long elapsed = System.nanoTime() - begin;
+            pool.shutdown();
+
+            Arrays.sort(latencies);
+            System.out.printf("%s, %d clients x %d queries%n", unix ? "unix socket" : "tcp", clients, queries);
+            System.out.printf("throughput: %.0f queries/s%n", latencies.length / (elapsed / 1e9));
+            System.out.printf("p50: %.1f us  p99: %.1f us  max: %.1f us%n",
+                    percentile(latencies, 0.50) / 1e3, percentile(latencies, 0.99) / 1e3,
+                    latencies[latencies.length - 1] / 1e3);
+        }
+    }
+
+    /**
+     * Sends queries over one connection and records the latency of each.
+     */
+    private static long[] runClient(SocketAddress address, int queries, Random random) throws Exception {
+        long[] latencies = new long[queries];
+        char[] input = new char[INPUT_LENGTH];
+        try (MatchClient client = new MatchClient(address)) {
+            for (int i = 0; i < queries; i++) {
+                for (int j = 0; j < input.length; j++) {
+                    input[j] = (char) ('a' + random.nextInt(SYMBOLS));
+                }
+                long begin = System.nanoTime();
+                client.accepts("bench", new String(input));
+                latencies[i] = System.nanoTime() - begin;
+            }
+        }
+        return latencies;
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1)];
+    }
+
+    /**
+     * Builds a total DFA with random transitions.
+     */
+    private static DFA randomDFA(Random random) {
+        DFABuilder builder = new DFABuilder(STATES, SYMBOLS);
+        for (int sym = 0; sym < SYMBOLS; sym++) {
+            builder.addSigma((char) ('a' + sym));
+        }
+        for (int state = 0; state < STATES; state++) {
+            builder.addState("q" + state);
+            if (random.nextInt(4) == 0) {
+                builder.setFinal("q" + state);
+            }
+            for (int sym = 0; sym < SYMBOLS; sym++) {
+                builder.addTransition("q" + state, "q" + random.nextInt(STATES), (char) ('a' + sym));
+            }
+        }
+        builder.setStart("q0");
+        return builder.build();
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ * Connects to a MatchServer and asks it whether its DFAs accept
+ * inputs. A client holds one connection and is not thread safe;
+ * use one client per thread.
+ *
+ * @author Josh Miller and Jack Garcia
+ */
+
+
+package fa.dfa.server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+public class MatchClient implements AutoCloseable {
+
+    private final SocketChannel channel;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+
+    /**
+     * Connects to a server.
+     *
+     * @param address the address of the server, a UnixDomainSocketAddress or an InetSocketAddress
+     * @throws IOException if the connection fails
+     */
+    public MatchClient(SocketAddress address) throws IOException {
+        channel = address instanceof UnixDomainSocketAddress
+                ? SocketChannel.open(StandardProtocolFamily.UNIX)
+                : SocketChannel.open();
+        channel.connect(address);
+        in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+        out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+    }
+
+    /**
+     * Asks the server whether a DFA accepts an input.
+     *
+     * @param dfaName the name the DFA was registered under
+     * @param input the input string
+     * @return true if the DFA accepts the input
+     * @throws IOException if the connection fails
+     * @throws IllegalArgumentException if no DFA has that name
+     */
+    public boolean accepts(String dfaName, String input) throws IOException {
+        byte[] bytes = input.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MatchProtocol.MAX_INPUT) {
+            throw new IllegalArgumentException("input too long: " + bytes.length + " bytes");
+        }
+
+        out.writeByte(MatchProtocol.OP_ACCEPTS);
+        out.writeUTF(dfaName);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+        out.flush();
+
+        byte status = in.readByte();
+        switch (status) {
+            case MatchProtocol.ACCEPTED:
+                return true;
+            case MatchProtocol.REJECTED:
+                return false;
+            case MatchProtocol.UNKNOWN_DFA:
+                throw new IllegalArgumentException("unknown DFA " + dfaName);
+            default:
+                throw new IOException("server could not answer the query, status " + status);
+        }
+    }
+
+    /**
+     * Closes the connection.
+     *
+     * @throws IOException if closing fails
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
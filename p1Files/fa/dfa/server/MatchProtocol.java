@@ -0,0 +1,26 @@
+/**
+ * Constants of the binary protocol spoken between MatchServer
+ * and MatchClient. A request is one op byte, the DFA name as
+ * modified UTF-8 (DataOutput.writeUTF), the input length in bytes
+ * as an int, and the input as UTF-8. The reply is one status byte.
+ *
+ * @author Josh Miller and Jack Garcia
+ */
+
+
+package fa.dfa.server;
+
+final class MatchProtocol {
+
+    static final byte OP_ACCEPTS = 1;  //Asks whether a DFA accepts an input
+
+    static final byte REJECTED = 0;    //The DFA does not accept the input
+    static final byte ACCEPTED = 1;    //The DFA accepts the input
+    static final byte UNKNOWN_DFA = 2; //No DFA is registered under the name
+    static final byte BAD_REQUEST = 3; //The request could not be read
+
+    static final int MAX_INPUT = 64 << 20; //Largest input in bytes
+
+    private MatchProtocol() {
+    }
+}
@@ -0,0 +1,343 @@
+/**
+ * Serves acceptance queries for named DFAs to other processes on
+ * the same host, over a Unix domain socket or a localhost TCP port.
+ * Every connection gets its own thread, and queries from all
+ * connections are handed to a few matcher threads, which take them
+ * off a shared queue in batches. A batch is grouped by DFA, equal
+ * inputs are checked once, and each group is answered in one pass
+ * over its table (see CompiledDFA.acceptsAll).
+ *
+ * @author Josh Miller and Jack Garcia
+ */
+
+
+package fa.dfa.server;
+
+import fa.dfa.CompiledDFA;
+import fa.dfa.DFA;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+
+public class MatchServer implements AutoCloseable {
+
+    private static final int MAX_BATCH = 256;  //Most queries a matcher thread takes at once
+    private static final int S_IFMT = 0170000;     //File type bits of a Unix mode
+    private static final int S_IFSOCK = 0140000;   //File type of a socket
+
+    private final Map<String, CompiledDFA> dfas;   //Registered DFAs by name
+    private final BlockingQueue<Query> queries;    //Queries waiting for a matcher thread
+    private final ServerSocketChannel server;
+    private final ExecutorService connections;     //Runs one task per connection
+    private final List<Thread> matchers;
+    private volatile boolean running;
+    private boolean closed;    //Set by the first close(), guarded by this
+
+    /**
+     * Creates a server bound to the given address, which is either a
+     * UnixDomainSocketAddress or an InetSocketAddress. Use port 0 to
+     * get a free port, and getAddress() to find out which one.
+     *
+     * A socket file left behind by a server that is gone is removed
+     * first; any other file at a Unix socket path is left alone.
+     *
+     * @param address the address to listen on
+     * @param matcherThreads the number of threads that run queries
+     * @throws IOException if the address cannot be bound, or a Unix socket
+     *         path names a file that is not a socket or a socket still in use
+     */
+    public MatchServer(SocketAddress address, int matcherThreads) throws IOException {
+        dfas = new ConcurrentHashMap<>();
+        queries = new LinkedBlockingQueue<>();
+        if (address instanceof UnixDomainSocketAddress) {
+            removeStaleSocket((UnixDomainSocketAddress) address);
+            server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        } else {
+            server = ServerSocketChannel.open();
+        }
+        try {
+            server.bind(address);
+        } catch (IOException | RuntimeException e) {
+            server.close();
+            throw e;
+        }
+
+        connections = connectionExecutor();
+        matchers = new ArrayList<>();
+        for (int i = 0; i < matcherThreads; i++) {
+            Thread matcher = new Thread(this::runMatcher, "dfa-matcher-" + i);
+            matcher.setDaemon(true);
+            matchers.add(matcher);
+        }
+    }
+
+    /**
+     * Deletes the file at a Unix socket path if it is a socket that
+     * nothing listens on any more.
+     *
+     * @param address the Unix socket address
+     * @throws IOException if the path is some other file or a socket in use
+     */
+    private static void removeStaleSocket(UnixDomainSocketAddress address) throws IOException {
+        Path path = address.getPath();
+        if (!Files.exists(path, LinkOption.NOFOLLOW_LINKS)) return;
+
+        int mode;
+        try {
+            mode = (Integer) Files.getAttribute(path, "unix:mode", LinkOption.NOFOLLOW_LINKS);
+        } catch (UnsupportedOperationException e) {
+            throw new IOException("cannot tell whether " + path + " is a socket", e);
+        }
+        //FIFOs and device nodes also refuse connections, so check the file type first
+        if ((mode & S_IFMT) != S_IFSOCK) {
+            throw new IOException(path + " exists and is not a socket");
+        }
+        try {
+            SocketChannel.open(address).close();
+        } catch (ConnectException e) {
+            Files.delete(path);
+            return;
+        }
+        throw new IOException(path + " is in use by another server");
+    }
+
+    /**
+     * Registers a DFA under a name, replacing any DFA with that name.
+     * The DFA is compiled now; later changes to it are not seen.
+     *
+     * @param name the name clients use
+     * @param dfa the DFA
+     */
+    public void register(String name, DFA dfa) {
+        dfas.put(name, dfa.compile());
+    }
+
+    /**
+     * Removes a DFA.
+     *
+     * @param name the name of the DFA
+     * @return true if a DFA with that name was registered
+     */
+    public boolean unregister(String name) {
+        return dfas.remove(name) != null;
+    }
+
+    /**
+     * @return the address the server listens on
+     * @throws IOException if the server is closed
+     */
+    public SocketAddress getAddress() throws IOException {
+        return server.getLocalAddress();
+    }
+
+    /**
+     * Starts accepting connections in the background.
+     */
+    public void start() {
+        running = true;
+        for (Thread matcher : matchers) {
+            matcher.start();
+        }
+        Thread acceptor = new Thread(this::runAcceptor, "dfa-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Stops the server and closes all connections. Closing it again
+     * does nothing.
+     *
+     * @throws IOException if the listening socket cannot be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        running = false;
+        SocketAddress address = server.getLocalAddress();
+        server.close();
+        connections.shutdownNow();
+        for (Thread matcher : matchers) {
+            matcher.interrupt();
+        }
+        if (address instanceof UnixDomainSocketAddress) {
+            Files.deleteIfExists(((UnixDomainSocketAddress) address).getPath());
+        }
+    }
+
+    private void runAcceptor() {
+        while (running) {
+            try {
+                SocketChannel channel = server.accept();
+                connections.execute(() -> serve(channel));
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                if (!running) return;
+            }
+        }
+    }
+
+    /**
+     * Answers queries on one connection until the client closes it.
+     */
+    private void serve(SocketChannel channel) {
+        try (channel;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)))) {
+            while (true) {
+                byte op;
+                try {
+                    op = in.readByte();
+                } catch (EOFException e) {
+                    return;
+                }
+
+                if (op != MatchProtocol.OP_ACCEPTS) {
+                    //The rest of the stream cannot be read, so give up on it
+                    out.writeByte(MatchProtocol.BAD_REQUEST);
+                    out.flush();
+                    return;
+                }
+
+                out.writeByte(answer(in));
+                if (in.available() == 0) {
+                    out.flush();
+                }
+            }
+        } catch (IOException | InterruptedException e) {
+            //The connection is gone or the server is closing
+        }
+    }
+
+    /**
+     * Reads the rest of one acceptance query and waits for its result.
+     */
+    private byte answer(DataInputStream in) throws IOException, InterruptedException {
+        String name = in.readUTF();
+        int length = in.readInt();
+        if (length < 0 || length > MatchProtocol.MAX_INPUT) {
+            throw new IOException("bad input length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+
+        CompiledDFA dfa = dfas.get(name);
+        if (dfa == null) return MatchProtocol.UNKNOWN_DFA;
+
+        Query query = new Query(dfa, new String(bytes, StandardCharsets.UTF_8));
+        queries.put(query);
+        try {
+            return query.result.get() ? MatchProtocol.ACCEPTED : MatchProtocol.REJECTED;
+        } catch (ExecutionException e) {
+            return MatchProtocol.BAD_REQUEST;
+        }
+    }
+
+    /**
+     * Takes queries off the queue in batches and runs them.
+     */
+    private void runMatcher() {
+        List<Query> batch = new ArrayList<>(MAX_BATCH);
+        while (running) {
+            try {
+                batch.add(queries.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queries.drainTo(batch, MAX_BATCH - 1);
+
+            Map<CompiledDFA, Map<String, List<Query>>> groups = new IdentityHashMap<>();
+            for (Query query : batch) {
+                groups.computeIfAbsent(query.dfa, dfa -> new LinkedHashMap<>())
+                        .computeIfAbsent(query.input, input -> new ArrayList<>()).add(query);
+            }
+            for (Map.Entry<CompiledDFA, Map<String, List<Query>>> group : groups.entrySet()) {
+                answer(group.getKey(), group.getValue());
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Answers the queries for one DFA, grouped by input, with one
+     * pass over its table.
+     */
+    private static void answer(CompiledDFA dfa, Map<String, List<Query>> byInput) {
+        List<String> inputs = new ArrayList<>(byInput.keySet());
+        try {
+            BitSet accepted = dfa.acceptsAll(inputs);
+            for (int i = 0; i < inputs.size(); i++) {
+                for (Query query : byInput.get(inputs.get(i))) {
+                    query.result.complete(accepted.get(i));
+                }
+            }
+        } catch (RuntimeException e) {
+            for (List<Query> same : byInput.values()) {
+                for (Query query : same) {
+                    query.result.completeExceptionally(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Uses a virtual thread per connection when the JDK has them
+     * (21 and later), and a cached pool of platform threads otherwise.
+     */
+    private static ExecutorService connectionExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task, "dfa-connection");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * One query waiting for a matcher thread.
+     */
+    private static final class Query {
+        private final CompiledDFA dfa;
+        private final String input;
+        private final CompletableFuture<Boolean> result;
+
+        Query(CompiledDFA dfa, String input) {
+            this.dfa = dfa;
+            this.input = input;
+            this.result = new CompletableFuture<>();
+        }
+    }
+}
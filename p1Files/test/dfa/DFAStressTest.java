@@ -0,0 +1,265 @@
+package test.dfa;
+
+import static org.junit.Assert.*;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import fa.dfa.CompiledDFA;
+import fa.dfa.ConcurrentDFA;
+import fa.dfa.DFA;
+import fa.dfa.DFASet;
+import fa.dfa.DFAState;
+import fa.dfa.IncrementalMatcher;
+import fa.dfa.OffHeapDFA;
+import fa.dfa.PersistentDFA;
+import fa.dfa.SuffixMatcher;
+
+/**
+ * Runs random DFAs through every way of checking acceptance and
+ * makes sure they all agree with a plain walk over the states.
+ * The largest DFA has 200000 states by default; set the system
+ * property dfa.stress.states to try bigger ones, for example
+ * -Ddfa.stress.states=2000000.
+ */
+public class DFAStressTest {
+
+	private static final int LARGE_STATES = Integer.getInteger("dfa.stress.states", 200000);
+	private static final int MAX_INCREMENTAL_STATES = 10000;	//every edit of an IncrementalMatcher composes maps over all states
+	private static final int PARALLEL_STATES = 1000;	//smallest DFA that gets long inputs for acceptsParallel
+	private static final int PARALLEL_CHUNK = 1 << 16;	//CompiledDFA's smallest parallel chunk
+	private static final int MAX_REVERSE_STATES = 12;	//reversing can take exponentially many states
+
+	/**
+	 * Walks the DFA by hand, starting from q0.
+	 */
+	private boolean reference(DFA dfa, String s) {
+		if (s.isEmpty()) {
+			return false;
+		}
+		DFAState state = (DFAState) dfa.getState("q0");
+		for (int i = 0; i < s.length() && state != null; i++) {
+			state = state.getTransistion(s.charAt(i));
+		}
+		return state != null && dfa.isFinal(state.getName());
+	}
+
+	private boolean overSigma(DFA dfa, String s) {
+		for (int i = 0; i < s.length(); i++) {
+			if (!dfa.getSigma().contains(s.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Checks every acceptance path on one random DFA.
+	 * @return the number of accepted inputs
+	 */
+	private int crossCheck(long seed, int states, int symbols, double density, double acceptingRatio,
+			int inputs, int maxLength) {
+		RandomDFAGenerator generator = new RandomDFAGenerator(seed);
+		DFA dfa = generator.generate(states, symbols, density, acceptingRatio);
+		List<String> corpus = generator.corpus(dfa, inputs, maxLength);
+
+		CompiledDFA compiled = dfa.compile();
+		CompiledDFA profiled = compiled.withProfiledLayout(corpus.subList(0, corpus.size() / 2));
+		OffHeapDFA offHeap = OffHeapDFA.of(compiled);
+		ConcurrentDFA concurrent = new ConcurrentDFA(dfa);
+		DFA cached = generator.generate(states, symbols, density, acceptingRatio);
+		cached.enablePrefixCache(1000, 16);
+		IncrementalMatcher matcher = states <= MAX_INCREMENTAL_STATES ? dfa.incrementalMatcher("") : null;
+
+		DFA swapped = dfa.swap(RandomDFAGenerator.symbol(0), RandomDFAGenerator.symbol(symbols - 1))
+				.swap(RandomDFAGenerator.symbol(0), RandomDFAGenerator.symbol(symbols - 1));
+
+		DFA complement = dfa.complement();
+		DFASet set = new DFASet(List.of(dfa, complement, swapped));
+		DFA reversed = null;
+		SuffixMatcher suffix = null;
+		if (states <= MAX_REVERSE_STATES) {
+			reversed = dfa.reverse();
+			suffix = dfa.suffixMatcher();
+			//Brzozowski and Hopcroft agree on the minimal DFA
+			DFA brzozowski = reversed.reverse();
+			assertEquals(compiled.minimize().stateCount(), brzozowski.compile().stateCount());
+			assertEquals(dfa.fingerprint(), brzozowski.fingerprint());
+		}
+
+		DFA minimized = dfa.minimize();
+		assertEquals(compiled.minimize().stateCount(), minimized.compile().stateCount());
+
+		PersistentDFA persistent = PersistentDFA.of(dfa);
+		PersistentDFA edited = persistent.withState("extra").withFinal("extra")
+				.withTransition("q0", "extra", RandomDFAGenerator.symbol(0));
+		assertEquals(dfa.fingerprint(), persistent.fingerprint());
+		CompiledDFA minimal = compiled.minimize();
+		CompiledDFA canonical = compiled.canonical();
+		assertTrue(minimal.stateCount() <= compiled.stateCount());
+		assertEquals(minimal.stateCount(), canonical.stateCount());
+		assertEquals(minimal.stateCount(), minimal.minimize().stateCount());
+		assertEquals(dfa.fingerprint(), swapped.fingerprint());
+		assertEquals(dfa.fingerprint(), minimal.fingerprint());
+
+		BitSet batch = compiled.acceptsAll(corpus);
+		int accepted = 0;
+		int index = 0;
+		for (String s : corpus) {
+			boolean expected = reference(dfa, s);
+			if (expected) {
+				accepted++;
+			}
+			String message = "seed " + seed + ", input " + s;
+			assertEquals(message, expected, dfa.accepts(s));
+			assertEquals(message, expected, compiled.accepts(s));
+			assertEquals(message, expected, profiled.accepts(s));
+			assertEquals(message, expected, dfa.acceptsParallel(s));
+			assertEquals(message, expected, offHeap.accepts(s));
+			assertEquals(message, expected, concurrent.accepts(s));
+			assertEquals(message, expected, cached.accepts(s));
+			assertEquals(message, expected, swapped.accepts(s));
+			assertEquals(message, expected, minimal.accepts(s));
+			assertEquals(message, expected, persistent.accepts(s));
+			assertEquals(message, expected, minimized.accepts(s));
+			if (s.length() == 1 && s.charAt(0) == RandomDFAGenerator.symbol(0)) {
+				assertTrue(message, edited.accepts(s));
+			}
+			assertEquals(message, expected, canonical.accepts(s));
+			assertEquals(message, expected, batch.get(index++));
+			assertEquals(message, !expected && overSigma(dfa, s), complement.accepts(s));
+			BitSet matches = set.accepts(s);
+			assertEquals(message, expected, matches.get(0));
+			assertEquals(message, !expected && overSigma(dfa, s), matches.get(1));
+			assertEquals(message, expected, matches.get(2));
+
+			if (reversed != null) {
+				assertEquals(message, expected, reversed.accepts(new StringBuilder(s).reverse().toString()));
+				if (overSigma(dfa, s)) {
+					assertEquals(message, expected, suffix.accepts(s));
+				}
+			}
+
+			if (matcher != null) {
+				matcher.replace(0, matcher.length(), s);
+				assertEquals(message, expected, matcher.accepts());
+			}
+		}
+
+		//inputs long enough to be split into chunks by acceptsParallel
+		if (states >= PARALLEL_STATES) {
+			for (String s : generator.longInputs(dfa, 4, 2 * PARALLEL_CHUNK + 1000)) {
+				boolean expected = reference(dfa, s);
+				String message = "seed " + seed + ", long input";
+				assertEquals(message, expected, dfa.accepts(s));
+				assertEquals(message, expected, compiled.accepts(s));
+				assertEquals(message, expected, dfa.acceptsParallel(s));
+				assertEquals(message, expected, profiled.acceptsParallel(s));
+				assertEquals(message, expected, minimal.acceptsParallel(s));
+			}
+		}
+
+		assertNotNull(dfa.toString());
+		return accepted;
+	}
+
+	@Test
+	public void testSmall() {
+		for (long seed = 0; seed < 50; seed++) {
+			crossCheck(seed, 2 + (int) seed % 10, 2 + (int) seed % 3, 0.9, 0.4, 300, 20);
+		}
+		System.out.println("small random DFAs pass");
+	}
+
+	@Test
+	public void testMedium() {
+		//the corpus must exercise both answers
+		int accepted = crossCheck(361, 1000, 4, 1.0, 0.3, 2000, 200);
+		assertTrue(accepted > 0 && accepted < 2000);
+		accepted = crossCheck(362, 5000, 26, 0.95, 0.5, 2000, 100);
+		assertTrue(accepted > 0 && accepted < 2000);
+		System.out.println("medium random DFAs pass");
+	}
+
+	@Test
+	public void testLarge() {
+		int accepted = crossCheck(2024, LARGE_STATES, 8, 1.0, 0.5, 500, 1000);
+		assertTrue(accepted > 0 && accepted < 500);
+		System.out.println("large random DFA pass");
+	}
+
+	@Test
+	public void testIncrementalEdits() {
+		RandomDFAGenerator generator = new RandomDFAGenerator(11);
+		DFA dfa = generator.generate(2000, 3, 1.0, 0.5);
+		Random random = new Random(11);
+		StringBuilder document = new StringBuilder();
+		for (int i = 0; i < 100000; i++) {
+			document.append(RandomDFAGenerator.symbol(random.nextInt(3)));
+		}
+		IncrementalMatcher matcher = dfa.incrementalMatcher(document);
+		
+		//one character edits at a constant length must not pile up blocks
+		for (int edit = 0; edit < 15000; edit++) {
+			int pos = random.nextInt(document.length());
+			String s = String.valueOf(RandomDFAGenerator.symbol(random.nextInt(3)));
+			if (edit % 2 == 0) {
+				document.deleteCharAt(pos);
+				matcher.delete(pos, 1);
+			} else {
+				document.insert(pos, s);
+				matcher.insert(pos, s);
+			}
+			if (edit % 1000 == 0) {
+				assertEquals(reference(dfa, document.toString()), matcher.accepts());
+			}
+		}
+		assertEquals(document.toString(), matcher.toString());
+		assertEquals(reference(dfa, document.toString()), matcher.accepts());
+		assertTrue(matcher.blockCount() + " blocks", matcher.blockCount() <= 2 * document.length() / 2000 + 1);
+		System.out.println("incremental edits pass");
+	}
+
+	@Test
+	public void testIncrementalMemory() {
+		RandomDFAGenerator generator = new RandomDFAGenerator(13);
+		DFA dfa = generator.generate(MAX_INCREMENTAL_STATES, 3, 1.0, 0.5);
+		Random random = new Random(13);
+		StringBuilder document = new StringBuilder();
+		for (int i = 0; i < 1000000; i++) {
+			document.append(RandomDFAGenerator.symbol(random.nextInt(3)));
+		}
+		IncrementalMatcher matcher = dfa.incrementalMatcher(document);
+		
+		//blocks grow with the state count, so the maps stay within 16 bytes per character
+		for (int edit = 0; edit < 100; edit++) {
+			int pos = random.nextInt(document.length());
+			document.deleteCharAt(pos);
+			matcher.delete(pos, 1);
+		}
+		long mapBytes = 2L * 4 * MAX_INCREMENTAL_STATES * matcher.blockCount();
+		assertTrue(mapBytes + " bytes", mapBytes <= 16L * document.length() + 8L * MAX_INCREMENTAL_STATES);
+		assertEquals(reference(dfa, document.toString()), matcher.accepts());
+		System.out.println("incremental memory pass");
+	}
+
+	@Test
+	public void testLongInput() {
+		RandomDFAGenerator generator = new RandomDFAGenerator(7);
+		DFA dfa = generator.generate(100, 2, 1.0, 0.5);
+		StringBuilder input = new StringBuilder();
+		Random random = new Random(7);
+		for (int i = 0; i < 2000000; i++) {
+			input.append(RandomDFAGenerator.symbol(random.nextInt(2)));
+		}
+		String s = input.toString();
+		boolean expected = reference(dfa, s);
+		assertEquals(expected, dfa.accepts(s));
+		assertEquals(expected, dfa.acceptsParallel(s));
+		assertEquals(expected, dfa.incrementalMatcher(s).accepts());
+		System.out.println("long input pass");
+	}
+}
@@ -2,11 +2,37 @@ package test.dfa;
 
 import static org.junit.Assert.*;
 
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
 import java.util.Set;
 
 import org.junit.Test;
 
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import fa.dfa.AcceptedSampler;
+import fa.dfa.CompiledDFA;
+import fa.dfa.ConcurrentDFA;
 import fa.dfa.DFA;
+import fa.dfa.DFABuilder;
+import fa.dfa.DFAFingerprint;
+import fa.dfa.DFARegistry;
+import fa.dfa.DFASet;
+import fa.dfa.IncrementalMatcher;
+import fa.dfa.OffHeapDFA;
+import fa.dfa.PersistentDFA;
+import fa.dfa.PrefixCache;
+import fa.dfa.SuffixMatcher;
 
 public class DFATest {
 	
@@ -128,6 +154,124 @@ public class DFATest {
 		System.out.println("dfa1Swap accept pass");
 	}
 
+	@Test
+	public void test1_7() {
+		DFABuilder builder = new DFABuilder(2, 2);
+		builder.addSigma('0');
+		builder.addSigma('1');
+		assertTrue(builder.addState("a"));
+		assertTrue(builder.addState("b"));
+		assertFalse(builder.addState("a"));
+		builder.setStart("a");
+		builder.setFinal("b");
+		builder.addTransitions(new String[] {"a", "a", "b", "b"},
+				new char[] {'0', '1', '0', '1'},
+				new String[] {"a", "b", "a", "b"});
+		
+		DFA dfa = builder.build();
+		assertEquals(dfa.toString(), dfa1().toString());
+		assertTrue(dfa.accepts("101"));
+		assertTrue(builder.buildCompiled().accepts("101"));
+		assertFalse(builder.buildCompiled().accepts("00"));
+		
+		builder.addTransition("a", "c", '1');
+		try {
+			builder.build();
+			fail("unknown state accepted");
+		} catch (IllegalStateException e) {
+			//expected
+		}
+		
+		System.out.println("dfa1 builder pass");
+	}
+
+	@Test
+	public void test1_8() {
+		DFA dfa = dfa1();
+		//dfa1 accepts the strings that end in 1
+		assertEquals(dfa.countAccepted(0), BigInteger.ZERO);
+		assertEquals(dfa.countAccepted(1), BigInteger.ONE);
+		assertEquals(dfa.countAccepted(10), BigInteger.valueOf(512));
+		assertEquals(dfa.countAccepted(1000), BigInteger.TWO.pow(999));
+		assertEquals(dfa.countAccepted(1000, 1000000007L), BigInteger.TWO.pow(999).mod(BigInteger.valueOf(1000000007L)).longValue());
+		assertEquals(dfa.shortestAccepted(), "1");
+		
+		AcceptedSampler sampler = dfa.sampleAccepted(8, new Random(361));
+		assertFalse(sampler.isEmpty());
+		for (int i = 0; i < 20; i++) {
+			String sample = sampler.next();
+			assertEquals(sample.length(), 8);
+			assertTrue(dfa.accepts(sample));
+		}
+		
+		System.out.println("dfa1 counting pass");
+	}
+
+	@Test
+	public void test1_9() {
+		DFA dfa = dfa1();
+		CompiledDFA compiled = dfa.compile();
+		assertEquals(compiled.stateIdBytes(), 1);
+		
+		CompiledDFA profiled = dfa.optimizeLayout(List.of("0000", "0001", "001"));
+		assertSame(dfa.compile(), profiled);
+		assertFalse(profiled.accepts("00"));
+		assertTrue(profiled.accepts("101"));
+		assertFalse(profiled.accepts("e"));
+		
+		//a change drops the profiled layout
+		dfa.addSigma('2');
+		assertNotSame(dfa.compile(), profiled);
+		
+		System.out.println("dfa1 layout pass");
+	}
+
+	@Test
+	public void test1_10() {
+		PersistentDFA v1 = PersistentDFA.of(dfa1());
+		assertEquals(v1.toDFA().toString(), dfa1().toString());
+		assertTrue(v1.accepts("01"));
+		assertFalse(v1.accepts("10"));
+		
+		PersistentDFA v2 = v1.withTransition("b", "b", '0');
+		assertTrue(v2.accepts("10"));
+		assertEquals(v2.getTransition("b", '0'), "b");
+		PersistentDFA v3 = v2.withState("c").withFinal("c").withTransition("a", "c", '0');
+		assertTrue(v3.accepts("0"));
+		assertEquals(v3.stateCount(), 3);
+		
+		//older versions do not change
+		assertFalse(v1.accepts("10"));
+		assertFalse(v2.accepts("0"));
+		assertFalse(v2.hasState("c"));
+		assertEquals(v1.getTransition("b", '0'), "a");
+		
+		//where DFA would return false, nothing changes
+		assertSame(v1.withState("a"), v1);
+		assertSame(v1.withFinal("c"), v1);
+		assertSame(v1.withStart("c"), v1);
+		assertSame(v1.withTransition("a", "c", '1'), v1);
+		assertSame(v1.withTransition("a", "b", '2'), v1);
+		assertSame(v1.withTransition("a", "b", '1'), v1);
+		assertSame(v1.withSigma('0'), v1);
+		
+		//"Aa" and "BB" have the same hash code
+		PersistentDFA v4 = v3.withState("Aa").withState("BB").withFinal("BB").withTransition("Aa", "BB", '1');
+		assertEquals(v4.stateCount(), 5);
+		assertFalse(v4.isFinal("Aa"));
+		assertTrue(v4.isFinal("BB"));
+		assertEquals(v4.getTransition("Aa", '1'), "BB");
+		assertEquals(v4.getTransition("BB", '1'), null);
+		
+		DFA copy = v3.toDFA();
+		assertTrue(copy.accepts("0"));
+		assertTrue(copy.isFinal("c"));
+		assertTrue(copy.isStart("a"));
+		assertEquals(copy.getSigma(), Set.of('0', '1'));
+		
+		System.out.println("dfa1 persistent versions pass");
+	}
+
 //------------------- dfaI tests ----------------------//
 	private DFA dfa2() {
 		DFA dfa = new DFA();
@@ -252,6 +396,210 @@ public class DFATest {
 		System.out.println("dfa2Swap accept pass");
 	}	
 
+	@Test
+	public void test2_7() {
+		DFA dfa = dfa2();
+		StringBuilder input = new StringBuilder("00");
+		for (int i = 0; i < 300000; i++) {
+			input.append(i % 3 == 0 ? '0' : '1');
+		}
+		assertTrue(dfa.acceptsParallel(input));
+		assertFalse(dfa.acceptsParallel("1".repeat(300000)));
+		assertFalse(dfa.acceptsParallel("1110111111111010"));
+		assertTrue(dfa.acceptsParallel("111011111111110"));
+		
+		System.out.println("dfa2 parallel accept pass");
+	}
+
+	@Test
+	public void test2_8() {
+		DFA dfa = dfa2();
+		IncrementalMatcher matcher = dfa.incrementalMatcher("010");
+		assertFalse(matcher.accepts());
+		
+		matcher.insert(1, "0");
+		assertEquals(matcher.toString(), "0010");
+		assertTrue(matcher.accepts());
+		
+		matcher.delete(0, 2);
+		assertEquals(matcher.toString(), "10");
+		assertFalse(matcher.accepts());
+		
+		matcher.replace(0, 1, "111011111111110");
+		assertTrue(matcher.accepts());
+		matcher.delete(0, matcher.length());
+		assertFalse(matcher.accepts());
+		
+		System.out.println("dfa2 incremental accept pass");
+	}
+
+	@Test
+	public void test2_9() throws IOException {
+		DFA dfa = dfa2();
+		Path file = Files.createTempFile("dfa2", ".bin");
+		try {
+			OffHeapDFA.write(dfa.compile(), file);
+			for (OffHeapDFA offHeap : new OffHeapDFA[] {OffHeapDFA.of(dfa.compile()), OffHeapDFA.map(file)}) {
+				assertEquals(offHeap.stateCount(), 4);
+				assertFalse(offHeap.accepts("010"));
+				assertTrue(offHeap.accepts("00"));
+				assertFalse(offHeap.accepts("101"));
+				assertTrue(offHeap.accepts("111011111111110"));
+				assertFalse(offHeap.accepts("1110111111111010"));
+			}
+			
+			//a truncated or corrupt file is refused when it is mapped
+			byte[] bytes = Files.readAllBytes(file);
+			byte[][] bad = new byte[][] {
+				Arrays.copyOf(bytes, bytes.length - 1),
+				Arrays.copyOf(bytes, 8),
+				bytes.clone(), bytes.clone(), bytes.clone() };
+			bad[2][4] = (byte) 0xff;
+			bad[2][7] = (byte) 0xff;	//negative state count
+			bad[3][8] = (byte) 100;	//more symbols than the file holds
+			bad[4][12] = (byte) 4;	//start state out of range
+			for (byte[] b : bad) {
+				Files.write(file, b);
+				try {
+					OffHeapDFA.map(file);
+					fail("mapped a bad table");
+				} catch (IOException e) {
+					//expected
+				}
+			}
+		} finally {
+			Files.delete(file);
+		}
+		
+		System.out.println("dfa2 off-heap accept pass");
+	}
+
+	@Test
+	public void test2_10() {
+		DFA dfa = dfa2();
+		PrefixCache cache = dfa.enablePrefixCache(16, 8);
+		assertTrue(dfa.accepts("111011111111110"));
+		assertFalse(dfa.accepts("1110111111111010"));
+		assertTrue(dfa.accepts("00"));
+		assertFalse(dfa.accepts("010"));
+		assertFalse(dfa.accepts("101"));
+		assertTrue(cache.hits() > 0);
+		assertTrue(cache.size() <= 16);
+		//hits and misses count symbols
+		assertEquals(cache.hits() + cache.misses(), 15 + 16 + 2 + 3 + 3);
+		
+		//a tail read only once is not cached
+		cache.clear();
+		assertFalse(dfa.accepts("0111"));
+		assertEquals(cache.size(), 0);
+		assertFalse(dfa.accepts("0101"));
+		assertEquals(cache.size(), 0);
+		assertTrue(cache.hitRate() < 1);
+		
+		//changing the DFA clears the cache
+		assertTrue(dfa.addTransition("0", "3", '1'));
+		assertEquals(cache.size(), 0);
+		assertTrue(dfa.accepts("1"));
+		
+		System.out.println("dfa2 prefix cache pass");
+	}
+
+	@Test
+	public void test2_11() {
+		ConcurrentDFA dfa = new ConcurrentDFA(dfa2());
+		assertEquals(dfa.version(), 1);
+		assertTrue(dfa.accepts("00"));
+		assertFalse(dfa.accepts("101"));
+		
+		try (ConcurrentDFA.Batch batch = dfa.edit()) {
+			assertTrue(batch.addState("4"));
+			assertTrue(batch.setFinal("4"));
+			assertTrue(batch.addTransition("0", "4", '1'));
+			assertFalse(batch.addTransition("0", "5", '1'));
+			//not visible until published
+			assertFalse(dfa.accepts("1"));
+			assertEquals(batch.publish(), 2);
+		}
+		assertTrue(dfa.accepts("1"));
+		assertTrue(dfa.accepts("00"));
+		
+		try (ConcurrentDFA.Batch batch = dfa.edit()) {
+			assertTrue(batch.addTransition("0", "0", '1'));
+		}
+		assertTrue(dfa.accepts("1"));
+		assertEquals(dfa.version(), 2);
+		
+		System.out.println("dfa2 concurrent pass");
+	}
+
+	@Test
+	public void test2_12() throws IOException {
+		Path file = Files.createTempFile("dfa2", ".jfr");
+		try (Recording recording = new Recording()) {
+			recording.enable("fa.dfa.Operation");
+			recording.enable("fa.dfa.Accept");
+			recording.enable("fa.dfa.Cache");
+			recording.start();
+			
+			DFA dfa = dfa2();
+			dfa.swap('1', '0').toString();
+			CompiledDFA compiled = dfa.compile();
+			//acceptance checks are sampled, so run plenty of them
+			for (int i = 0; i < 20000; i++) {
+				assertTrue(compiled.accepts("111011111111110"));
+			}
+			IncrementalMatcher matcher = dfa.incrementalMatcher("00");
+			for (int i = 0; i < 20000; i++) {
+				assertTrue(matcher.accepts());
+			}
+			dfa.enablePrefixCache(16, 8);
+			//a prefix is cached the second time it is read
+			assertTrue(dfa.accepts("00"));
+			assertTrue(dfa.accepts("00"));
+			assertTrue(dfa.addTransition("0", "3", '1'));
+			
+			recording.stop();
+			recording.dump(file);
+			
+			Set<String> operations = new HashSet<>();
+			int accepts = 0;
+			int incremental = 0;
+			int clears = 0;
+			for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+				switch (event.getEventType().getName()) {
+				case "fa.dfa.Operation":
+					operations.add(event.getString("operation"));
+					assertEquals(event.getInt("states"), 4);
+					break;
+				case "fa.dfa.Accept":
+					if (event.getString("engine").equals("incremental")) {
+						incremental++;
+						assertEquals(event.getInt("inputLength"), 2);
+						assertTrue(event.getBoolean("accepted"));
+					}
+					if (!event.getString("engine").equals("compiled")) break;
+					accepts++;
+					assertEquals(event.getInt("inputLength"), 15);
+					assertEquals(event.getInt("steps"), 15);
+					assertTrue(event.getBoolean("accepted"));
+					break;
+				case "fa.dfa.Cache":
+					clears++;
+					assertEquals(event.getString("action"), "clear");
+					break;
+				}
+			}
+			assertEquals(operations, Set.of("swap", "toString", "compile"));
+			assertTrue(accepts > 0 && accepts < 20000);
+			assertTrue(incremental > 0 && incremental < 20000);
+			assertEquals(clears, 1);
+		} finally {
+			Files.delete(file);
+		}
+		
+		System.out.println("dfa2 flight recorder events pass");
+	}
+
 //------------------- dfa3 tests ----------------------//
 private DFA dfa3() {
 	DFA dfa = new DFA();
@@ -406,6 +754,118 @@ public void test3_6() {
 	System.out.println("dfa3Swap accept pass");
 }
 
+/**
+ * dfa3 with other state names, added in another order.
+ */
+private DFA dfa3Renamed() {
+	DFABuilder builder = new DFABuilder(7, 2);
+	builder.addSigma('1');
+	builder.addSigma('2');
+	for (String name : new String[] {"s6", "s5", "s4", "s3", "s2", "s1", "s0"}) {
+		builder.addState(name);
+	}
+	builder.setStart("s0");
+	builder.setFinal("s5");
+	builder.setFinal("s6");
+	builder.addTransitions(
+			new String[] {"s0", "s0", "s1", "s1", "s2", "s2", "s3", "s3", "s4", "s4", "s5", "s5", "s6", "s6"},
+			new char[] {'2', '1', '2', '1', '2', '1', '2', '1', '2', '1', '2', '1', '2', '1'},
+			new String[] {"s2", "s1", "s3", "s6", "s5", "s4", "s3", "s6", "s5", "s4", "s5", "s4", "s3", "s6"});
+	return builder.build();
+}
+
+@Test
+public void test3_7() {
+	DFA dfa = dfa3();
+	CompiledDFA min = dfa.compile().minimize();
+	assertEquals(min.stateCount(), 5);
+	for (String s : new String[] {"121212121", "12221212121", "12", "2", "1212", "22", "211", "3", ""}) {
+		assertEquals(min.accepts(s), dfa.accepts(s));
+	}
+	
+	CompiledDFA canonical = dfa.compile().canonical();
+	assertEquals(canonical.stateCount(), 5);
+	assertEquals(dfa.fingerprint(), dfa3Renamed().fingerprint());
+	assertEquals(dfa.fingerprint().toString().length(), 32);
+	//swapping the symbols of dfa3 gives the same language, complementing does not
+	assertEquals(dfa.fingerprint(), dfa.swap('2', '1').fingerprint());
+	assertFalse(dfa.fingerprint().equals(dfa.complement().fingerprint()));
+	
+	//unused symbols and unreachable states do not change the fingerprint
+	dfa.addSigma('3');
+	assertTrue(dfa.addState("X"));
+	assertTrue(dfa.addTransition("X", "A", '3'));
+	assertEquals(dfa.fingerprint(), dfa3Renamed().fingerprint());
+	
+	System.out.println("dfa3 canonical form pass");
+}
+
+@Test
+public void test3_8() {
+	DFARegistry registry = new DFARegistry();
+	CompiledDFA engine = registry.intern(dfa3());
+	assertSame(registry.intern(dfa3Renamed()), engine);
+	assertSame(registry.get(dfa3().fingerprint()), engine);
+	assertSame(registry.intern(dfa3().swap('2', '1')), engine);
+	assertNotSame(registry.intern(dfa3().complement()), engine);
+	assertEquals(registry.size(), 2);
+	assertTrue(engine.accepts("121212121"));
+	assertFalse(engine.accepts("12"));
+	
+	System.out.println("dfa3 registry pass");
+}
+
+@Test
+public void test3_9() {
+	DFA dfa = new DFA();
+	dfa.addSigma('x');
+	dfa.addSigma('y');
+	assertTrue(dfa.addState("s"));
+	assertTrue(dfa.addState("t"));
+	assertTrue(dfa.setStart("s"));
+	assertTrue(dfa.setFinal("t"));
+	assertTrue(dfa.addTransition("s", "t", 'x'));
+	assertTrue(dfa.addTransition("t", "t", 'y'));
+	assertTrue(dfa.addTransition("t", "s", 'x'));
+	DFAFingerprint fingerprint = dfa.fingerprint();
+	
+	//the profiled layout puts t before the start state
+	dfa.optimizeLayout(List.of("xyyyyyyyyyy"));
+	CompiledDFA min = dfa.compile().minimize();
+	assertTrue(min.accepts("x"));
+	assertFalse(min.accepts("y"));
+	assertTrue(min.accepts("xyyxx"));
+	assertEquals(dfa.fingerprint(), fingerprint);
+	
+	System.out.println("profiled layout minimize pass");
+}
+
+@Test
+public void test3_10() {
+	DFA[] dfas = new DFA[2];
+	for (int i = 0; i < dfas.length; i++) {
+		DFA dfa = new DFA();
+		dfa.addSigma('a');
+		assertTrue(dfa.addState("s"));
+		assertTrue(dfa.addState("t"));
+		assertTrue(dfa.setStart("s"));
+		assertTrue(dfa.setFinal("t"));
+		assertTrue(dfa.addTransition("s", "t", 'a'));
+		assertTrue(dfa.addTransition("t", "t", 'a'));
+		dfas[i] = dfa;
+	}
+	//the empty string is never accepted, so a final start state changes nothing
+	assertTrue(dfas[1].setFinal("s"));
+	assertEquals(dfas[0].fingerprint(), dfas[1].fingerprint());
+	
+	DFARegistry registry = new DFARegistry();
+	assertSame(registry.intern(dfas[0]), registry.intern(dfas[1]));
+	assertTrue(registry.intern(dfas[1]).accepts("aaa"));
+	assertFalse(registry.intern(dfas[1]).accepts(""));
+	
+	System.out.println("final start state fingerprint pass");
+}
+
 	private DFA dfa4() {
 		DFA dfa = new DFA();
 		dfa.addSigma('a');
@@ -479,6 +939,228 @@ public void test3_6() {
 		System.out.println("dfa4 long strings deny pass");
 	}
 
+	@Test
+	public void test4_8() {
+		DFA dfa = dfa4().complete();
+		String dfaStr = dfa.toString();
+		String expStr = "Q={s1 s2 s3 sink}\n"
+				+ "Sigma = {a b}\n"
+				+ "delta =\n"
+				+ "	a	b\n"
+				+ "s1	s2	sink\n"
+				+ "s2	s2	s3\n"
+				+ "s3	s1	s3\n"
+				+ "sink	sink	sink\n"
+				+ "q0 = s1\n"
+				+ "F = {s3}\n";
+		assertTrue(dfaStr.replaceAll("\\s", "").equals(expStr.replaceAll("\\s", "")));
+		assertTrue(dfa.accepts("ab"));
+		assertFalse(dfa.accepts("aabab"));
+		
+		//an existing sink is reused
+		assertEquals(dfa.complete().toString(), dfaStr);
+		System.out.println("dfa4 complete pass");
+	}
+	
+	@Test
+	public void test4_9() {
+		DFA dfa = dfa4().complement();
+		assertFalse(dfa.accepts("ab"));
+		assertFalse(dfa.accepts("aab"));
+		assertFalse(dfa.accepts("abbbbb"));
+		assertTrue(dfa.accepts("aabab"));
+		assertTrue(dfa.accepts("aaba"));
+		assertTrue(dfa.accepts("b"));
+		assertFalse(dfa.accepts(""));
+		assertFalse(dfa.accepts("c"));
+		assertTrue(dfa.isFinal("sink"));
+		assertFalse(dfa.isFinal("s3"));
+		
+		assertTrue(dfa.complement().accepts("ab"));
+		assertFalse(dfa.complement().accepts("aabab"));
+		System.out.println("dfa4 complement pass");
+	}
+	
+	//------------------- dfa set tests ----------------------//
+	@Test
+	public void test5_1() {
+		List<DFA> dfas = List.of(dfa1(), dfa2(), dfa3(), dfa4(), dfa4().complement());
+		DFASet set = new DFASet(dfas);
+		assertEquals(set.size(), 5);
+		
+		String[] inputs = {"0", "1", "00", "101", "0001000000000101", "121212121", "12", "ab", "aabab", "b", "c", ""};
+		for (String s : inputs) {
+			BitSet expected = new BitSet();
+			for (int m = 0; m < dfas.size(); m++) {
+				if (dfas.get(m).accepts(s)) {
+					expected.set(m);
+				}
+			}
+			assertEquals(set.accepts(s), expected);
+		}
+		assertTrue(set.accepts("").isEmpty());
+		assertEquals(set.accepts("ab"), BitSet.valueOf(new long[] {0b01000}));
+		
+		System.out.println("dfa set accept pass");
+	}
+	
+	//------------------- reverse tests ----------------------//
+	/**
+	 * All strings over {a, b} of length 1 to 8.
+	 */
+	private List<String> abStrings() {
+		List<String> strings = new ArrayList<>();
+		for (int length = 1; length <= 8; length++) {
+			for (int bits = 0; bits < 1 << length; bits++) {
+				StringBuilder s = new StringBuilder();
+				for (int i = 0; i < length; i++) {
+					s.append((bits >> i & 1) == 0 ? 'a' : 'b');
+				}
+				strings.add(s.toString());
+			}
+		}
+		return strings;
+	}
+	
+	/**
+	 * Accepts the strings over {a, t, x, .} that end in ".txt".
+	 */
+	private DFA dfaTxt() {
+		DFA dfa = new DFA();
+		for (char symbol : new char[] {'a', 't', 'x', '.'}) {
+			dfa.addSigma(symbol);
+		}
+		String[] states = {"none", "dot", "dott", "dottx", "dottxt"};
+		for (String state : states) {
+			assertTrue(dfa.addState(state));
+		}
+		for (String state : states) {
+			for (char symbol : new char[] {'a', 't', 'x'}) {
+				assertTrue(dfa.addTransition(state, "none", symbol));
+			}
+			assertTrue(dfa.addTransition(state, "dot", '.'));
+		}
+		assertTrue(dfa.addTransition("dot", "dott", 't'));
+		assertTrue(dfa.addTransition("dott", "dottx", 'x'));
+		assertTrue(dfa.addTransition("dottx", "dottxt", 't'));
+		assertTrue(dfa.setStart("none"));
+		assertTrue(dfa.setFinal("dottxt"));
+		return dfa;
+	}
+	
+	/**
+	 * Wraps s so that reading more than its last readable characters fails.
+	 */
+	private CharSequence tailOnly(String s, int readable) {
+		return new CharSequence() {
+			public int length() {
+				return s.length();
+			}
+			
+			public char charAt(int index) {
+				assertTrue("read index " + index, index >= s.length() - readable);
+				return s.charAt(index);
+			}
+			
+			public CharSequence subSequence(int start, int end) {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+	
+	@Test
+	public void test6_1() {
+		DFA dfa = dfa4();
+		DFA reversed = dfa.reverse();
+		assertTrue(reversed.isStart("{s3}"));
+		for (String s : abStrings()) {
+			String backwards = new StringBuilder(s).reverse().toString();
+			assertEquals(s, reversed.accepts(backwards), dfa.accepts(s));
+		}
+		assertFalse(reversed.accepts(""));
+		assertFalse(reversed.accepts("c"));
+		
+		assertEquals(reversed.reverse().fingerprint(), dfa.fingerprint());
+		System.out.println("dfa4 reverse pass");
+	}
+	
+	@Test
+	public void test6_2() {
+		DFA dfa = dfa3();
+		DFA min = dfa.minimize();
+		assertEquals(min.compile().stateCount(), 5);
+		assertTrue(min.isStart("A"));
+		assertNotNull(min.getState("G"));
+		assertEquals(min.fingerprint(), dfa.fingerprint());
+		for (String s : new String[] {"121212121", "12221212121", "12", "2", "1212", "22", "211"}) {
+			assertEquals(min.accepts(s), dfa.accepts(s));
+		}
+		
+		//the sink added by complete is dropped again
+		assertEquals(dfa4().complete().minimize().toString(), dfa4().minimize().toString());
+		System.out.println("dfa3 minimize pass");
+	}
+	
+	@Test
+	public void test6_3() {
+		DFA dfa = dfaTxt();
+		SuffixMatcher matcher = dfa.suffixMatcher();
+		String prefix = "a.t.x".repeat(100000);
+		
+		//only the last four characters decide
+		assertTrue(matcher.accepts(tailOnly(prefix + ".txt", 4)));
+		assertTrue(matcher.accepts(".txt"));
+		assertFalse(matcher.accepts(tailOnly(prefix + ".txa", 1)));
+		assertFalse(matcher.accepts(tailOnly(prefix + ".ttt", 3)));
+		assertFalse(matcher.accepts("txt"));
+		assertFalse(matcher.accepts(""));
+		
+		for (String s : new String[] {"a.txt", "..txt", ".txtt", ".tx", "t.x.txt", "x"}) {
+			assertEquals(s, matcher.accepts(s), dfa.accepts(s));
+		}
+		System.out.println("dfaTxt suffix matcher pass");
+	}
+	
+	@Test
+	public void test6_4() {
+		//strings whose tenth symbol is a: 11 states, but the reverse needs 2^10
+		DFA dfa = new DFA();
+		dfa.addSigma('a');
+		dfa.addSigma('b');
+		for (int i = 0; i <= 10; i++) {
+			assertTrue(dfa.addState("p" + i));
+		}
+		assertTrue(dfa.setStart("p0"));
+		assertTrue(dfa.setFinal("p10"));
+		for (int i = 0; i < 9; i++) {
+			assertTrue(dfa.addTransition("p" + i, "p" + (i + 1), 'a'));
+			assertTrue(dfa.addTransition("p" + i, "p" + (i + 1), 'b'));
+		}
+		assertTrue(dfa.addTransition("p9", "p10", 'a'));
+		assertTrue(dfa.addTransition("p10", "p10", 'a'));
+		assertTrue(dfa.addTransition("p10", "p10", 'b'));
+		
+		try {
+			dfa.reverse(1000);
+			fail("reverse went past its limit");
+		} catch (IllegalStateException e) {
+			//expected
+		}
+		try {
+			dfa.suffixMatcher(1000);
+			fail("suffix matcher went past its limit");
+		} catch (IllegalStateException e) {
+			//expected
+		}
+		
+		SuffixMatcher matcher = dfa.suffixMatcher(1 << 11);
+		assertTrue(matcher.stateCount() > 1000);
+		for (String s : new String[] {"bbbbbbbbba", "bbbbbbbbbb", "aaaaaaaaaab", "bbbbbbbbbbab", "a"}) {
+			assertEquals(s, dfa.accepts(s), matcher.accepts(s));
+		}
+		System.out.println("reverse state limit pass");
+	}
+	
 	@Test
 	public void testAcceptanceForValidInputs() {
 		assertTrue(dfa4().accepts("ab"));
@@ -0,0 +1,95 @@
+package test.dfa;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import fa.dfa.CompiledDFA;
+import fa.dfa.DFABuilder;
+
+/**
+ * Compares matching speed of the default breadth first state layout
+ * with the layout profiled from sample inputs, on a DFA whose table
+ * is far larger than the CPU caches. The inputs only use the first
+ * few symbols, and on those symbols the hot states (one percent of
+ * the DFA) only lead to each other. Breadth first numbering mixes
+ * the hot rows with all the cold ones; profiling packs them together.
+ *
+ * Usage: java test.dfa.LayoutBenchmark [states] [symbols]
+ * (give the JVM enough heap, e.g. -Xmx4g for the default 2000000 states)
+ */
+public class LayoutBenchmark {
+
+	private static final double HOT_STATES = 0.01;	//share of states that are hot
+	private static final int HOT_SYMBOLS = 4;	//symbols the inputs use
+
+	public static void main(String[] args) {
+		int states = args.length > 0 ? Integer.parseInt(args[0]) : 2000000;
+		int symbols = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+		Random random = new Random(361);
+
+		int[] hot = new int[Math.max(1, (int) (states * HOT_STATES))];
+		boolean[] isHot = new boolean[states];
+		for (int i = 0; i < hot.length; i++) {
+			hot[i] = random.nextInt(states);
+			isHot[hot[i]] = true;
+		}
+
+		DFABuilder builder = new DFABuilder(states, symbols);
+		for (int sym = 0; sym < symbols; sym++) {
+			builder.addSigma(RandomDFAGenerator.symbol(sym));
+		}
+		for (int q = 0; q < states; q++) {
+			builder.addState("q" + q);
+			if (random.nextBoolean()) {
+				builder.setFinal("q" + q);
+			}
+		}
+		builder.setStart("q" + hot[0]);
+		for (int q = 0; q < states; q++) {
+			for (int sym = 0; sym < symbols; sym++) {
+				boolean staysHot = isHot[q] && sym < HOT_SYMBOLS;
+				int to = staysHot ? hot[random.nextInt(hot.length)] : random.nextInt(states);
+				builder.addTransition("q" + q, "q" + to, RandomDFAGenerator.symbol(sym));
+			}
+		}
+
+		CompiledDFA breadthFirst = builder.buildCompiled();
+		List<String> inputs = new ArrayList<>();
+		for (int i = 0; i < 2000; i++) {
+			char[] input = new char[1000];
+			for (int j = 0; j < input.length; j++) {
+				input[j] = RandomDFAGenerator.symbol(random.nextInt(HOT_SYMBOLS));
+			}
+			inputs.add(new String(input));
+		}
+		CompiledDFA profiled = breadthFirst.withProfiledLayout(inputs.subList(0, 200));
+
+		System.out.printf("%d states, %d symbols, %d byte state ids, table %d MB%n", states, symbols,
+				breadthFirst.stateIdBytes(), (long) states * symbols * breadthFirst.stateIdBytes() >> 20);
+		for (int round = 0; round < 5; round++) {
+			System.out.printf("breadth first: %.2f ns/symbol   profiled: %.2f ns/symbol%n",
+					run(breadthFirst, inputs), run(profiled, inputs));
+		}
+	}
+
+	/**
+	 * @return the average time per input symbol in nanoseconds
+	 */
+	private static double run(CompiledDFA dfa, List<String> inputs) {
+		long symbols = 0;
+		int accepted = 0;
+		long begin = System.nanoTime();
+		for (String input : inputs) {
+			if (dfa.accepts(input)) {
+				accepted++;
+			}
+			symbols += input.length();
+		}
+		long elapsed = System.nanoTime() - begin;
+		if (accepted < 0) {
+			System.out.println(accepted);
+		}
+		return (double) elapsed / symbols;
+	}
+}
@@ -0,0 +1,149 @@
+package test.dfa;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import fa.dfa.AcceptedSampler;
+import fa.dfa.DFA;
+import fa.dfa.DFABuilder;
+import fa.dfa.DFAState;
+
+/**
+ * Seeded generator of random DFAs and matching input corpora,
+ * so tests and benchmarks can run on automata far larger than
+ * the hand-written ones. The same seed always gives the same DFA
+ * and the same inputs.
+ *
+ * States are named q0, q1, ... and q0 is the start state. Symbols
+ * are consecutive characters starting at 'a'.
+ */
+public class RandomDFAGenerator {
+
+	private static final int MAX_SAMPLED_STATES = 100000;
+	
+	private final long seed;
+
+	public RandomDFAGenerator(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Generates a DFA.
+	 * @param states number of states
+	 * @param symbols size of the alphabet
+	 * @param density chance that a (state, symbol) pair has a transition
+	 * @param acceptingRatio chance that a state is final
+	 * @return the DFA
+	 */
+	public DFA generate(int states, int symbols, double density, double acceptingRatio) {
+		Random random = new Random(seed);
+		DFABuilder builder = new DFABuilder(states, symbols);
+		for (int sym = 0; sym < symbols; sym++) {
+			builder.addSigma(symbol(sym));
+		}
+
+		String[] names = new String[states];
+		for (int q = 0; q < states; q++) {
+			names[q] = "q" + q;
+			builder.addState(names[q]);
+			if (random.nextDouble() < acceptingRatio) {
+				builder.setFinal(names[q]);
+			}
+		}
+		builder.setStart(names[0]);
+
+		for (int q = 0; q < states; q++) {
+			for (int sym = 0; sym < symbols; sym++) {
+				if (random.nextDouble() < density) {
+					builder.addTransition(names[q], names[random.nextInt(states)], symbol(sym));
+				}
+			}
+		}
+
+		return builder.build();
+	}
+
+	/**
+	 * Generates inputs for a DFA: random strings over its alphabet,
+	 * random strings with a character outside the alphabet, and
+	 * accepted strings drawn by the DFA's sampler, in equal parts.
+	 * DFAs with more than 100000 states get random strings instead of samples.
+	 * @param dfa a DFA made by generate
+	 * @param count number of inputs
+	 * @param maxLength longest input
+	 * @return the inputs
+	 */
+	public List<String> corpus(DFA dfa, int count, int maxLength) {
+		Random random = new Random(seed + 1);
+		int symbols = dfa.getSigma().size();
+		List<String> inputs = new ArrayList<>(count);
+
+		//the sampler keeps a count per state and length, so only use it on smaller DFAs
+		AcceptedSampler sampler = dfa.sampleAccepted(Math.min(maxLength, 24), random);
+		boolean canSample = dfa.compile().stateCount() <= MAX_SAMPLED_STATES && !sampler.isEmpty();
+
+		for (int i = 0; i < count; i++) {
+			int kind = i % 3;
+			if (kind == 2 && canSample) {
+				inputs.add(sampler.next());
+				continue;
+			}
+
+			char[] input = new char[1 + random.nextInt(maxLength)];
+			for (int j = 0; j < input.length; j++) {
+				input[j] = symbol(random.nextInt(symbols));
+			}
+			if (kind == 1) {
+				input[random.nextInt(input.length)] = symbol(symbols);
+			}
+			inputs.add(new String(input));
+		}
+
+		return inputs;
+	}
+
+	/**
+	 * Generates long inputs by walking the DFA from q0, taking a random
+	 * symbol that has a transition whenever there is one, so the inputs
+	 * stay alive to the end unless the walk reaches a state with none.
+	 * @param dfa a DFA made by generate
+	 * @param count number of inputs
+	 * @param length length of every input
+	 * @return the inputs
+	 */
+	public List<String> longInputs(DFA dfa, int count, int length) {
+		Random random = new Random(seed + 2);
+		int symbols = dfa.getSigma().size();
+		List<String> inputs = new ArrayList<>(count);
+
+		for (int i = 0; i < count; i++) {
+			char[] input = new char[length];
+			DFAState state = (DFAState) dfa.getState("q0");
+			for (int j = 0; j < length; j++) {
+				int first = random.nextInt(symbols);
+				input[j] = symbol(first);
+				for (int k = 0; k < symbols && state != null; k++) {
+					char c = symbol((first + k) % symbols);
+					if (state.getTransistion(c) != null) {
+						input[j] = c;
+						break;
+					}
+				}
+				if (state != null) {
+					state = state.getTransistion(input[j]);
+				}
+			}
+			inputs.add(new String(input));
+		}
+
+		return inputs;
+	}
+
+	/**
+	 * @return the character of symbol number sym
+	 */
+	public static char symbol(int sym) {
+		return (char) ('a' + sym);
+	}
+}
@@ -0,0 +1,130 @@
+package test.dfa.server;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import fa.dfa.DFA;
+import fa.dfa.server.MatchClient;
+import fa.dfa.server.MatchServer;
+
+public class MatchServerTest {
+	
+	private DFA dfa1() {
+		DFA dfa = new DFA();
+		dfa.addSigma('0');
+		dfa.addSigma('1');
+		dfa.addState("a");
+		dfa.addState("b");
+		dfa.setStart("a");
+		dfa.setFinal("b");
+		dfa.addTransition("a", "a", '0');
+		dfa.addTransition("a", "b", '1');
+		dfa.addTransition("b", "a", '0');
+		dfa.addTransition("b", "b", '1');
+		return dfa;
+	}
+	
+	private void checkServer(MatchServer server) throws Exception {
+		server.register("dfa1", dfa1());
+		server.start();
+		
+		try (MatchClient client = new MatchClient(server.getAddress())) {
+			assertFalse(client.accepts("dfa1", "0"));
+			assertTrue(client.accepts("dfa1", "1"));
+			assertFalse(client.accepts("dfa1", "00"));
+			assertTrue(client.accepts("dfa1", "101"));
+			assertFalse(client.accepts("dfa1", "e"));
+			assertFalse(client.accepts("dfa1", ""));
+			
+			try {
+				client.accepts("dfa2", "1");
+				fail("unknown DFA answered");
+			} catch (IllegalArgumentException e) {
+				//expected
+			}
+			assertTrue(client.accepts("dfa1", "1"));
+		}
+	}
+	
+	@Test
+	public void testTcp() throws Exception {
+		try (MatchServer server = new MatchServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 2)) {
+			checkServer(server);
+		}
+		System.out.println("tcp server pass");
+	}
+	
+	@Test
+	public void testUnixSocket() throws Exception {
+		Path dir = Files.createTempDirectory("dfa");
+		try (MatchServer server = new MatchServer(UnixDomainSocketAddress.of(dir.resolve("match.sock")), 2)) {
+			checkServer(server);
+		} finally {
+			Files.deleteIfExists(dir);
+		}
+		System.out.println("unix socket server pass");
+	}
+	
+	@Test
+	public void testUnixSocketPath() throws Exception {
+		Path dir = Files.createTempDirectory("dfa");
+		Path path = dir.resolve("match.sock");
+		try {
+			//a regular file is never deleted
+			Files.writeString(path, "not a socket");
+			try {
+				new MatchServer(UnixDomainSocketAddress.of(path), 1).close();
+				fail("server replaced a regular file");
+			} catch (IOException e) {
+				assertEquals(Files.readString(path), "not a socket");
+			}
+			Files.delete(path);
+			
+			//neither is a FIFO, which also refuses connections
+			if (new ProcessBuilder("mkfifo", path.toString()).start().waitFor() == 0) {
+				try {
+					new MatchServer(UnixDomainSocketAddress.of(path), 1).close();
+					fail("server replaced a FIFO");
+				} catch (IOException e) {
+					assertTrue(Files.exists(path));
+				}
+				Files.delete(path);
+			}
+			
+			//a socket nothing listens on is reused
+			ServerSocketChannel stale = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+			stale.bind(UnixDomainSocketAddress.of(path));
+			stale.close();
+			assertTrue(Files.exists(path));
+			MatchServer server = new MatchServer(UnixDomainSocketAddress.of(path), 1);
+			try {
+				//a socket in use is not taken over
+				try {
+					new MatchServer(UnixDomainSocketAddress.of(path), 1).close();
+					fail("server took over a socket in use");
+				} catch (IOException e) {
+					//expected
+				}
+				checkServer(server);
+			} finally {
+				server.close();
+			}
+			assertFalse(Files.exists(path));
+			server.close();	//a second close does nothing
+		} finally {
+			Files.deleteIfExists(path);
+			Files.deleteIfExists(dir);
+		}
+		System.out.println("unix socket path pass");
+	}
+}